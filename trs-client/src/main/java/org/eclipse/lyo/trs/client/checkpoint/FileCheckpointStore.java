@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.checkpoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the checkpoints in a local write-ahead log with one {@code <trs> <event> <order>} line per
+ * save, {@code -} standing for a missing value, followed by {@code <base page> <members>} while the
+ * base is being indexed. Saves are appended right away but only synced to
+ * disk at most once every {@code syncIntervalMillis} and on {@link #flush()}. The log is compacted
+ * to the latest checkpoint of each provider when it is opened and every
+ * {@code compactionRecords} saves. A line torn by a crash is ignored. Thread-safe.
+ *
+ * @since 4.0.0
+ */
+public class FileCheckpointStore implements ICheckpointStore, Closeable {
+    private final static Logger log = LoggerFactory.getLogger(FileCheckpointStore.class);
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_COMPACTION_RECORDS = 10_000;
+
+    private static final String MISSING = "-";
+
+    private final Path file;
+    private final long syncIntervalMillis;
+    private final int compactionRecords;
+    private final Map<URI, Checkpoint> checkpoints = new HashMap<>();
+    private FileChannel wal;
+    private int records;
+    private long lastSyncMillis;
+    private boolean dirty;
+
+    public FileCheckpointStore(final Path file) {
+        this(file, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_COMPACTION_RECORDS);
+    }
+
+    /**
+     * @param file               write-ahead log, created if it does not exist
+     * @param syncIntervalMillis min time between two syncs of the log caused by saves
+     * @param compactionRecords  number of saves after which the log is compacted
+     */
+    public FileCheckpointStore(final Path file, final long syncIntervalMillis,
+            final int compactionRecords) {
+        this.file = file;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.compactionRecords = Math.max(compactionRecords, 1);
+        if (Files.exists(file)) {
+            load();
+        }
+        compact();
+    }
+
+    @Override
+    public synchronized Checkpoint load(final URI trsUri) {
+        return checkpoints.get(trsUri);
+    }
+
+    @Override
+    public synchronized void save(final URI trsUri, final Checkpoint checkpoint) {
+        if (checkpoint != null) {
+            checkpoints.put(trsUri, checkpoint);
+        } else {
+            checkpoints.remove(trsUri);
+        }
+        try {
+            wal.write(ByteBuffer.wrap(record(trsUri, checkpoint)));
+            dirty = true;
+            if (++records >= compactionRecords) {
+                compact();
+            } else if (System.currentTimeMillis() - lastSyncMillis >= syncIntervalMillis) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the checkpoint to " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync the checkpoints to " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            wal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close {}", file, e);
+        }
+    }
+
+    private void sync() throws IOException {
+        if (dirty) {
+            wal.force(false);
+            dirty = false;
+        }
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Replace the log with the latest checkpoints atomically and reopen it for appending.
+     */
+    private void compact() {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (wal != null) {
+                wal.close();
+            }
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (FileChannel snapshot = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Map.Entry<URI, Checkpoint> entry : checkpoints.entrySet()) {
+                    snapshot.write(ByteBuffer.wrap(record(entry.getKey(), entry.getValue())));
+                }
+                snapshot.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            wal = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact the checkpoints in " + file, e);
+        }
+        records = 0;
+        dirty = false;
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private void load() {
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load the checkpoints from " + file, e);
+        }
+        // the part after the last newline, if any, was torn by a crash
+        final String[] lines = content.substring(0, content.lastIndexOf('\n') + 1).split("\n");
+        for (String line : lines) {
+            final String[] fields = line.split(" ");
+            if (fields.length != 3 && fields.length != 5) {
+                continue;
+            }
+            try {
+                final URI trsUri = URI.create(fields[0]);
+                if (MISSING.equals(fields[1])) {
+                    checkpoints.remove(trsUri);
+                } else {
+                    checkpoints.put(trsUri, new Checkpoint(URI.create(fields[1]),
+                            MISSING.equals(fields[2]) ? null : Integer.valueOf(fields[2]),
+                            fields.length == 5 ? URI.create(fields[3]) : null,
+                            fields.length == 5 ? Integer.parseInt(fields[4]) : 0));
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping a broken checkpoint record in {}: {}",
+                        file, line);
+            }
+        }
+        log.debug("Loaded {} checkpoints from {}", checkpoints.size(), file);
+    }
+
+    private static byte[] record(final URI trsUri, final Checkpoint checkpoint) {
+        final StringBuilder record = new StringBuilder().append(trsUri).append(' ');
+        if (checkpoint == null) {
+            record.append(MISSING).append(' ').append(MISSING);
+        } else {
+            record.append(checkpoint.getChangeEvent()).append(' ').append(
+                    checkpoint.getOrder() != null ? checkpoint.getOrder() : MISSING);
+            if (checkpoint.getBasePage() != null) {
+                record.append(' ').append(checkpoint.getBasePage()).append(' ').append(
+                        checkpoint.getBaseMembers());
+            }
+        }
+        return record.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.checkpoint;
+
+import java.net.URI;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+
+/**
+ * Keeps the position of the consumer in the change log of each provider across restarts. The
+ * provider handlers load the checkpoint when they are built, save it every time their cursor
+ * moves past committed change events and flush it at the end of each cycle.
+ * <p>
+ * A checkpoint that is older than the handled events only makes the consumer handle them again;
+ * a store may therefore buffer the saves until {@link #flush()}.
+ *
+ * @since 4.0.0
+ */
+public interface ICheckpointStore {
+    /**
+     * @param trsUri URI of the tracked resource set of the provider
+     *
+     * @return the last saved checkpoint, null if there is none
+     */
+    Checkpoint load(URI trsUri);
+
+    /**
+     * @param trsUri     URI of the tracked resource set of the provider
+     * @param checkpoint new position in the change log, null to forget it so that the provider is
+     *                   indexed from its base again
+     */
+    void save(URI trsUri, Checkpoint checkpoint);
+
+    /**
+     * Make the saved checkpoints durable.
+     */
+    void flush();
+}
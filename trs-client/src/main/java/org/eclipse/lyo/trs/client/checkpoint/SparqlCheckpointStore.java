@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.checkpoint;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionRemote;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.modify.request.QuadAcc;
+import org.apache.jena.sparql.modify.request.QuadDataAcc;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.sparql.modify.request.UpdateDeleteWhere;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+import org.apache.jena.update.UpdateRequest;
+import org.eclipse.lyo.core.trs.TRSConstants;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.eclipse.lyo.trs.client.util.SparqlConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the checkpoints in a graph of the triplestore the resources are indexed into, as
+ * {@code <trs> trs:cutoffEvent <event>} and {@code <trs> trs:order N} triples, plus the
+ * {@value #BASE_PAGE} and {@value #BASE_MEMBERS} of the base being indexed. Saves are buffered
+ * and the latest checkpoint of each provider is written with a single update on
+ * {@link #flush()}. Thread-safe.
+ *
+ * @since 4.0.0
+ */
+public class SparqlCheckpointStore implements ICheckpointStore {
+    private final static Logger log = LoggerFactory.getLogger(SparqlCheckpointStore.class);
+
+    public static final String DEFAULT_GRAPH = "urn:lyo:trs-client:checkpoints";
+    public static final String BASE_PAGE = "urn:lyo:trs-client:basePage";
+    public static final String BASE_MEMBERS = "urn:lyo:trs-client:baseMembers";
+
+    private static final Node CUTOFF_EVENT = NodeFactory.createURI(TRSConstants.TRS_CUTOFFEVENT);
+    private static final Node ORDER = NodeFactory.createURI(TRSConstants.TRS_ORDER);
+    private static final Node BASE_PAGE_NODE = NodeFactory.createURI(BASE_PAGE);
+    private static final Node BASE_MEMBERS_NODE = NodeFactory.createURI(BASE_MEMBERS);
+
+    private final RDFConnection connection;
+    private final String graph;
+    private final Map<URI, Checkpoint> pending = new LinkedHashMap<>();
+
+    /**
+     * Use the remote store over the pooled HTTP client of
+     * {@link SparqlConnectionManager#getDefault()}.
+     */
+    public SparqlCheckpointStore(final String queryEndpoint, final String updateEndpoint) {
+        this(RDFConnectionRemote.create()
+                .queryEndpoint(queryEndpoint)
+                .updateEndpoint(updateEndpoint)
+                .httpClient(SparqlConnectionManager.getDefault().getHttpClient())
+                .build());
+    }
+
+    public SparqlCheckpointStore(final RDFConnection connection) {
+        this(connection, DEFAULT_GRAPH);
+    }
+
+    /**
+     * @param connection connection to the store, e.g. to a local TDB2 dataset
+     * @param graph      graph holding the checkpoints
+     */
+    public SparqlCheckpointStore(final RDFConnection connection, final String graph) {
+        this.connection = connection;
+        this.graph = graph;
+    }
+
+    @Override
+    public synchronized Checkpoint load(final URI trsUri) {
+        if (pending.containsKey(trsUri)) {
+            return pending.get(trsUri);
+        }
+        final String query = "SELECT ?event ?order ?page ?members WHERE { GRAPH <" + graph
+                + "> { <" + trsUri + "> <" + TRSConstants.TRS_CUTOFFEVENT + "> ?event . "
+                + "OPTIONAL { <" + trsUri + "> <" + TRSConstants.TRS_ORDER + "> ?order } "
+                + "OPTIONAL { <" + trsUri + "> <" + BASE_PAGE + "> ?page ; <" + BASE_MEMBERS
+                + "> ?members } } }";
+        final Checkpoint[] checkpoint = new Checkpoint[1];
+        connection.querySelect(query, solution -> checkpoint[0] = checkpoint(solution));
+        log.debug("Loaded {} for {} from {}", checkpoint[0], trsUri, graph);
+        return checkpoint[0];
+    }
+
+    @Override
+    public synchronized void save(final URI trsUri, final Checkpoint checkpoint) {
+        pending.put(trsUri, checkpoint);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Node graphNode = NodeFactory.createURI(graph);
+        final UpdateRequest request = new UpdateRequest();
+        final QuadDataAcc inserts = new QuadDataAcc();
+        for (Map.Entry<URI, Checkpoint> entry : pending.entrySet()) {
+            final Node trs = NodeFactory.createURI(entry.getKey().toString());
+            // one DELETE WHERE per predicate, so that the optional ones are cleared too
+            for (Node predicate : new Node[]{CUTOFF_EVENT, ORDER, BASE_PAGE_NODE,
+                    BASE_MEMBERS_NODE}) {
+                final QuadAcc deletes = new QuadAcc();
+                deletes.addQuad(new Quad(graphNode, trs, predicate, Var.alloc("o")));
+                request.add(new UpdateDeleteWhere(deletes));
+            }
+            final Checkpoint checkpoint = entry.getValue();
+            if (checkpoint != null) {
+                inserts.addQuad(new Quad(graphNode, trs, CUTOFF_EVENT,
+                        NodeFactory.createURI(checkpoint.getChangeEvent().toString())));
+                if (checkpoint.getOrder() != null) {
+                    inserts.addQuad(new Quad(graphNode, trs, ORDER,
+                            NodeFactoryExtra.intToNode(checkpoint.getOrder())));
+                }
+                if (checkpoint.getBasePage() != null) {
+                    inserts.addQuad(new Quad(graphNode, trs, BASE_PAGE_NODE,
+                            NodeFactory.createURI(checkpoint.getBasePage().toString())));
+                    inserts.addQuad(new Quad(graphNode, trs, BASE_MEMBERS_NODE,
+                            NodeFactoryExtra.intToNode(checkpoint.getBaseMembers())));
+                }
+            }
+        }
+        if (!inserts.getQuads().isEmpty()) {
+            request.add(new UpdateDataInsert(inserts));
+        }
+        connection.update(request);
+        log.debug("Saved {} checkpoints to {}", pending.size(), graph);
+        pending.clear();
+    }
+
+    private static Checkpoint checkpoint(final QuerySolution solution) {
+        final URI changeEvent = URI.create(solution.getResource("event").getURI());
+        final Integer order = solution.contains("order") ? solution.getLiteral("order").getInt()
+                : null;
+        if (!solution.contains("page")) {
+            return new Checkpoint(changeEvent, order);
+        }
+        return new Checkpoint(changeEvent, order, URI.create(solution.getResource("page").getURI()),
+                solution.getLiteral("members").getInt());
+    }
+}
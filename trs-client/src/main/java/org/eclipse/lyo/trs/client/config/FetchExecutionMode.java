@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.config;
+
+/**
+ * How the concurrent provider handlers run the fetches of the tracked resources.
+ *
+ * @since 4.0.0
+ */
+public enum FetchExecutionMode {
+    /**
+     * A bounded pool of platform threads shared by all providers.
+     */
+    PLATFORM_THREADS,
+    /**
+     * A new virtual thread per fetch. Requires a JDK with virtual threads (21+); older JDKs fall
+     * back to {@link #PLATFORM_THREADS}.
+     */
+    VIRTUAL_THREADS,
+    /**
+     * Non-blocking I/O through {@link org.eclipse.lyo.trs.client.util.AsyncTrackedResourceClient};
+     * the fetches in flight do not hold any thread.
+     */
+    NON_BLOCKING
+}
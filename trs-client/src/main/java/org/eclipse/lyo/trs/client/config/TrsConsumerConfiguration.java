@@ -15,12 +15,59 @@
 package org.eclipse.lyo.trs.client.config;
 
 import com.google.common.base.Strings;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import javax.ws.rs.client.ClientBuilder;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.eclipse.lyo.oslc4j.client.OslcClient;
+import org.eclipse.lyo.trs.client.checkpoint.ICheckpointStore;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
 import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 
 public class TrsConsumerConfiguration {
+    /**
+     * Default number of tracked resources fetched and handled at once across all providers
+     */
+    public static final int DEFAULT_FETCH_CONCURRENCY = 16;
+    /**
+     * Default number of fetches that can wait for a worker before the polling thread is throttled
+     */
+    public static final int DEFAULT_FETCH_QUEUE_CAPACITY = 1024;
+    /**
+     * Default number of requests in flight to a single provider host
+     */
+    public static final int DEFAULT_PER_HOST_FETCH_LIMIT = 64;
+    /**
+     * Default number of representations a sequential provider fetches ahead
+     */
+    public static final int DEFAULT_PREFETCH_WINDOW = 8;
+    /**
+     * Default max number of base members or change events handed over to the event handler at
+     * once
+     */
+    public static final int DEFAULT_HANDLER_CHUNK_SIZE = 100;
+    /**
+     * Default number of change events a provider keeps in memory while catching up
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 100_000;
+    /**
+     * Default number of cycles in a row a provider may fail at the same position in its change
+     * log before it is rebased
+     */
+    public static final int DEFAULT_MAX_FAILED_CYCLES = 5;
+    /**
+     * Default number of threads preparing updates across all concurrent providers
+     */
+    public static final int DEFAULT_TRANSFORM_CONCURRENCY = Runtime.getRuntime()
+            .availableProcessors();
+
     private final String sparqlQueryUrl;
     private final String sparqlUpdateUrl;
     private final String sparqlUsername;
@@ -28,12 +75,41 @@ public class TrsConsumerConfiguration {
     private final ScheduledExecutorService scheduler;
     private final String basicUsername;
     private final String basicPassword;
+    private final int fetchConcurrency;
+    private final int fetchQueueCapacity;
+    private FetchExecutionMode fetchExecutionMode = FetchExecutionMode.PLATFORM_THREADS;
+    private int perHostFetchLimit = DEFAULT_PER_HOST_FETCH_LIMIT;
+    private int prefetchWindow = DEFAULT_PREFETCH_WINDOW;
+    private int transformConcurrency = DEFAULT_TRANSFORM_CONCURRENCY;
+    private int handlerChunkSize = DEFAULT_HANDLER_CHUNK_SIZE;
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private int maxFailedCycles = DEFAULT_MAX_FAILED_CYCLES;
+    private Path spillDirectory;
+    private ICheckpointStore checkpointStore;
     private OslcClient httpClient;
+    private CloseableHttpAsyncClient asyncHttpClient;
+    private ExecutorService fetchExecutor;
+    private ExecutorService transformExecutor;
 
     public TrsConsumerConfiguration(final String sparqlQueryUrl, final String sparqlUpdateUrl,
             final String sparqlUsername, final String sparqlPassword,
             final ScheduledExecutorService scheduler, final String basicUsername,
             final String basicPassword) {
+        this(sparqlQueryUrl, sparqlUpdateUrl, sparqlUsername, sparqlPassword, scheduler,
+                basicUsername, basicPassword, DEFAULT_FETCH_CONCURRENCY,
+                DEFAULT_FETCH_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param fetchConcurrency   max number of tracked resources fetched and handled at once
+     *                           across all concurrent providers
+     * @param fetchQueueCapacity max number of fetches waiting for a worker
+     */
+    public TrsConsumerConfiguration(final String sparqlQueryUrl, final String sparqlUpdateUrl,
+            final String sparqlUsername, final String sparqlPassword,
+            final ScheduledExecutorService scheduler, final String basicUsername,
+            final String basicPassword, final int fetchConcurrency,
+            final int fetchQueueCapacity) {
         this.sparqlQueryUrl = sparqlQueryUrl;
         this.sparqlUpdateUrl = sparqlUpdateUrl;
         this.sparqlUsername = sparqlUsername;
@@ -41,6 +117,8 @@ public class TrsConsumerConfiguration {
         this.scheduler = scheduler;
         this.basicUsername = basicUsername;
         this.basicPassword = basicPassword;
+        this.fetchConcurrency = fetchConcurrency;
+        this.fetchQueueCapacity = fetchQueueCapacity;
     }
 
     public ScheduledExecutorService getScheduler() {
@@ -74,4 +152,173 @@ public class TrsConsumerConfiguration {
         }
         return httpClient;
     }
+
+    /**
+     * @return started non-blocking HTTP client used in the
+     * {@link FetchExecutionMode#NON_BLOCKING} mode, with up to {@code fetchQueueCapacity}
+     * connections, {@link #setPerHostFetchLimit(int)} of them per host
+     */
+    public synchronized CloseableHttpAsyncClient getAsyncHttpClient() {
+        if (asyncHttpClient == null) {
+            final HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                    .setMaxConnTotal(fetchQueueCapacity)
+                    .setMaxConnPerRoute(perHostFetchLimit > 0 ? perHostFetchLimit
+                            : fetchQueueCapacity);
+            if (!Strings.isNullOrEmpty(basicUsername)) {
+                final CredentialsProvider credentials = new BasicCredentialsProvider();
+                credentials.setCredentials(AuthScope.ANY,
+                        new UsernamePasswordCredentials(basicUsername, basicPassword));
+                builder.setDefaultCredentialsProvider(credentials);
+            }
+            asyncHttpClient = builder.build();
+            asyncHttpClient.start();
+        }
+        return asyncHttpClient;
+    }
+
+    /**
+     * @return bounded executor shared by all concurrent provider handlers of this consumer
+     */
+    public synchronized ExecutorService getFetchExecutor() {
+        if (fetchExecutor == null) {
+            if (fetchExecutionMode == FetchExecutionMode.VIRTUAL_THREADS) {
+                fetchExecutor = TrsConsumerUtils.virtualThreadFetchExecutor(fetchQueueCapacity,
+                        fetchConcurrency);
+            } else {
+                fetchExecutor = TrsConsumerUtils.boundedFetchExecutor(fetchConcurrency,
+                        fetchQueueCapacity);
+            }
+        }
+        return fetchExecutor;
+    }
+
+    public FetchExecutionMode getFetchExecutionMode() {
+        return fetchExecutionMode;
+    }
+
+    /**
+     * Select how the tracked resources are fetched. Must be set before the handlers are built.
+     * With {@link FetchExecutionMode#VIRTUAL_THREADS} and {@link FetchExecutionMode#NON_BLOCKING},
+     * up to {@code fetchQueueCapacity} fetches run at once, limited by
+     * {@link #setPerHostFetchLimit(int)} per host.
+     */
+    public void setFetchExecutionMode(final FetchExecutionMode fetchExecutionMode) {
+        this.fetchExecutionMode = fetchExecutionMode;
+    }
+
+    public int getPerHostFetchLimit() {
+        return perHostFetchLimit;
+    }
+
+    /**
+     * @param perHostFetchLimit max number of requests in flight to a single host, 0 for no limit
+     */
+    public void setPerHostFetchLimit(final int perHostFetchLimit) {
+        this.perHostFetchLimit = perHostFetchLimit;
+    }
+
+    public int getFetchQueueCapacity() {
+        return fetchQueueCapacity;
+    }
+
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+
+    /**
+     * @param prefetchWindow number of representations a sequential provider has in flight on the
+     *                       fetch executor while it handles the change events in order; 1 fetches
+     *                       them one by one on the polling thread
+     */
+    public void setPrefetchWindow(final int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    public int getHandlerChunkSize() {
+        return handlerChunkSize;
+    }
+
+    /**
+     * @param handlerChunkSize max number of base members or change events passed to the event
+     *                         handler in one {@code handleBaseMembers} or
+     *                         {@code handleChangeEvents} call
+     */
+    public void setHandlerChunkSize(final int handlerChunkSize) {
+        this.handlerChunkSize = handlerChunkSize;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * @param spillThreshold max number of change events a provider keeps in memory while it
+     *                       traverses the change log back to the sync point. A longer change log
+     *                       is spilled to disk and replayed in windows of that many events.
+     */
+    public void setSpillThreshold(final int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public int getMaxFailedCycles() {
+        return maxFailedCycles;
+    }
+
+    /**
+     * @param maxFailedCycles number of cycles in a row a provider may fail at the same position
+     *                        in its change log, e.g. on a change event whose resource is gone,
+     *                        before it is rebased; 0 to always resume at that position
+     */
+    public void setMaxFailedCycles(final int maxFailedCycles) {
+        this.maxFailedCycles = maxFailedCycles;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @param spillDirectory directory of the change log spill files, null (default) for the
+     *                       default temporary directory
+     */
+    public void setSpillDirectory(final Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public ICheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    /**
+     * @param checkpointStore where the providers save their position in the change log and
+     *                        resume from after a restart, null (default) to index them from
+     *                        their base on every start
+     */
+    public void setCheckpointStore(final ICheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * @return bounded executor on which the concurrent provider handlers of this consumer prepare
+     * their updates
+     */
+    public synchronized ExecutorService getTransformExecutor() {
+        if (transformExecutor == null) {
+            transformExecutor = TrsConsumerUtils.boundedTransformExecutor(transformConcurrency,
+                    fetchQueueCapacity);
+        }
+        return transformExecutor;
+    }
+
+    public int getTransformConcurrency() {
+        return transformConcurrency;
+    }
+
+    /**
+     * @param transformConcurrency number of threads preparing the updates across all concurrent
+     *                             providers. Must be set before the handlers are built.
+     */
+    public void setTransformConcurrency(final int transformConcurrency) {
+        this.transformConcurrency = transformConcurrency;
+    }
 }
@@ -18,25 +18,16 @@
 package org.eclipse.lyo.trs.client.handlers;
 
 import java.net.URI;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.vocabulary.RDF;
-import org.eclipse.lyo.core.trs.Base;
+import java.util.concurrent.Executor;
 import org.eclipse.lyo.core.trs.ChangeEvent;
 import org.eclipse.lyo.core.trs.ChangeLog;
-import org.eclipse.lyo.core.trs.TrackedResourceSet;
-import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
-import org.eclipse.lyo.trs.client.exceptions.ServerRollBackException;
-import org.eclipse.lyo.trs.client.model.BaseMember;
-import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.config.TrsConsumerConfiguration;
+import org.eclipse.lyo.trs.client.util.BlockingTrackedResourceClient;
+import org.eclipse.lyo.trs.client.util.ExecutorTrackedResourceClient;
+import org.eclipse.lyo.trs.client.util.IAsyncTrackedResourceClient;
 import org.eclipse.lyo.trs.client.util.ITrackedResourceClient;
-import org.eclipse.lyo.trs.client.util.ProviderUtil;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,28 +42,43 @@ import org.slf4j.LoggerFactory;
  */
 public class ConcurrentTrsProviderHandler implements IProviderHandler {
     private final static Logger log = LoggerFactory.getLogger(ConcurrentTrsProviderHandler.class);
-    private final URI trsUriBase;
-    private final ITrackedResourceClient trsClient;
-    private final IProviderEventHandler handler;
-    private URI lastProcessedChangeEventUri;
+    private final Executor fetchExecutor;
+    private final ProviderEventPipeline pipeline;
+    private final ProviderSync sync;
+    /**
+     * The tasks submitted to the pipeline since the last commit
+     */
+    private TaskBarrier cycleTasks;
 
     public ConcurrentTrsProviderHandler(URI trsUriBase, final ITrackedResourceClient trsClient,
             IProviderEventHandler handler) {
-        this.trsUriBase = trsUriBase;
-        this.trsClient = trsClient;
-        this.handler = handler;
+        this(trsUriBase, trsClient, handler, new ProviderHandlerOptions());
+    }
+
+    /**
+     * @param options the fetch and transform executors, the max number of pending base members
+     *                and change events, chunk size, checkpoint store and spill settings; the
+     *                prefetch window is ignored
+     */
+    public ConcurrentTrsProviderHandler(URI trsUriBase, final ITrackedResourceClient trsClient,
+            IProviderEventHandler handler, final ProviderHandlerOptions options) {
+        this.fetchExecutor = options.getFetchExecutor() != null ? options.getFetchExecutor()
+                : DefaultFetchExecutorHolder.EXECUTOR;
+        this.pipeline = new ProviderEventPipeline(asyncClient(trsClient, fetchExecutor), handler,
+                options.getTransformExecutor() != null ? options.getTransformExecutor()
+                        : DefaultTransformExecutorHolder.EXECUTOR, options.getMaxPending(),
+                options.getChunkSize());
+        this.cycleTasks = new TaskBarrier(fetchExecutor);
+        this.sync = new ProviderSync(trsUriBase, trsClient, options, new PipelineCycle());
     }
 
     @Override
     public void update() {
-        try {
-            pollAndProcessChanges();
-        } catch (Exception e) {
-            // FIXME Andrew@2019-07-15: can get stuck in the loop
-            log.warn("Force rebase");
-            lastProcessedChangeEventUri = null;
-            handler.rebase();
-        }
+        sync.update();
+    }
+
+    public ProviderHandlerMetrics getMetrics() {
+        return sync.getMetrics();
     }
 
     /**
@@ -90,139 +96,72 @@ public class ConcurrentTrsProviderHandler implements IProviderHandler {
      * @return true if the last processed change event is found, false otherwise
      */
     public boolean fetchRemoteChangeLogs(ChangeLog currentChangeLog, List<ChangeLog> changeLogs) {
-        boolean foundChangeEvent = false;
-        URI previousChangeLog;
-        do {
-            if (currentChangeLog != null) {
-                changeLogs.add(currentChangeLog);
-                if (ProviderUtil.changeLogContainsEvent(lastProcessedChangeEventUri,
-                        currentChangeLog)) {
-                    foundChangeEvent = true;
-                    break;
-                }
-                previousChangeLog = currentChangeLog.getPrevious();
-                currentChangeLog = trsClient.fetchRemoteChangeLog(previousChangeLog);
-            } else {
-                break;
-            }
-        } while (!RDF.nil.getURI().equals(previousChangeLog.toString()));
-        return foundChangeEvent;
+        return sync.fetchRemoteChangeLogs(currentChangeLog, changeLogs::add);
     }
 
-    private void pollAndProcessChanges() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
-        Date processingDateStart = new Date();
-        log.info("started dealing with TRS Provider: " + trsUriBase);
-
-        TrackedResourceSet updatedTrs = trsClient.extractRemoteTrs(trsUriBase);
-        boolean indexingStage = false;
-        List<URI> baseMembers = new ArrayList<>();
-        if (lastProcessedChangeEventUri == null) {
-            log.debug("Indexing Stage.");
-            log.debug("Requesting Base members from remote server");
-            List<Base> bases = trsClient.updateBases(updatedTrs);
-            log.debug("Base members retrieved !");
-            for (Base base : bases) {
-                baseMembers.addAll(base.getMembers());
-            }
-
-            lastProcessedChangeEventUri = bases.get(0).getCutoffEvent();
-            indexingStage = true;
+    /**
+     * @return the asynchronous client behind a blocking adapter, or the blocking client run on the
+     * fetch executor
+     */
+    private static IAsyncTrackedResourceClient asyncClient(final ITrackedResourceClient trsClient,
+            final Executor fetchExecutor) {
+        if (trsClient instanceof BlockingTrackedResourceClient) {
+            return ((BlockingTrackedResourceClient) trsClient).getAsyncClient();
         }
-        log.debug("Requesting changeLogs from Remote Server");
-        List<ChangeLog> changeLogs = fetchUpdatedChangeLogs(updatedTrs);
-        log.debug("change Logs Retrieved ! ");
-        log.debug("Compressing the list of changes ! ");
-        List<ChangeEvent> compressedChanges = ProviderUtil.optimizedChangesList(changeLogs,
-                lastProcessedChangeEventUri);
-        log.debug("Change list compressed ! ");
-
-        /*======================================================*
-          COMMON CODE END (with TRS provider handler)
-         *======================================================*/
-
-        log.debug("starting the processing of change events and base members creations");
-
-        log.trace("Creating necessary sparql update queries");
-
-        ExecutorService handlerExecutor = Executors.newCachedThreadPool();
-
-        if (indexingStage) {
-            log.debug("optimizing the list of base members against the change events to be " +
-                    "processed.");
-            baseMembers = ProviderUtil.baseChangeEventsOptimizationSafe(compressedChanges,
-                    baseMembers);
-            log.debug("finished optimizing the list of base members against the change events to " +
-                    "" + "" + "" + "be" + " processed !");
-            log.debug("Indexing stage. Base members creations will be be added to the list of " +
-                    "events to be processed.");
+        return new ExecutorTrackedResourceClient(trsClient, fetchExecutor);
+    }
 
+    /**
+     * Submits the base members and change events to the pipeline; they are committed in no
+     * particular order, so the cursor only moves once a base page or the change events of a
+     * cycle are fully committed
+     */
+    private class PipelineCycle implements ProviderSync.Cycle {
+        @Override
+        public void indexBasePage(List<URI> baseMembers) {
             for (URI baseMemberUri : baseMembers) {
-                handlerExecutor.execute(() -> {
-                    try {
-                        Model graphToUpload = trsClient.fetchTRSRemoteResource(baseMemberUri);
-                        final BaseMember baseMember = new BaseMember(baseMemberUri, graphToUpload);
-                        handler.handleBaseMember(baseMember);
-                    } catch (RepresentationRetrievalException e) {
-                        log.warn("Failed to retrieve {}", baseMemberUri);
-                    }
-                });
+                pipeline.submitBaseMember(cycleTasks, baseMemberUri);
             }
         }
 
-        for (ChangeEvent compressedChangeEvent : compressedChanges) {
-            handlerExecutor.execute(() -> {
-                final ChangeEventMessageTR eventMessageTR = new ChangeEventMessageTR(
-                        compressedChangeEvent, null);
-                handler.handleChangeEvent(eventMessageTR);
-            });
-            lastProcessedChangeEventUri = compressedChangeEvent.getAbout();
+        @Override
+        public void processChangeEvents(List<ChangeEvent> changeEvents) {
+            for (ChangeEvent changeEvent : changeEvents) {
+                pipeline.submitChangeEvent(cycleTasks, changeEvent);
+            }
         }
 
-        handlerExecutor.shutdown();
-
-        if (!handlerExecutor.isTerminated()) {
-            try {
-                handlerExecutor.awaitTermination(3000, TimeUnit.MILLISECONDS);
-                handlerExecutor.shutdownNow();
-            } catch (InterruptedException e) {
-                log.debug("Handler thread interrupted while awaiting executor termination", e);
-            }
+        @Override
+        public void finishCycle() {
+            final TaskBarrier tasks = cycleTasks;
+            // a failed cycle does not fail the next one
+            cycleTasks = new TaskBarrier(fetchExecutor);
+            tasks.await();
+            pipeline.finishCycle();
         }
 
-        handler.finishCycle();
-        Date finishProcessingData = new Date();
-        log.info("finished dealing with TRS Provider: " + trsUriBase);
-        log.debug("start dealing at: " + sdf.format(processingDateStart) + " . Finished dealing " +
-                "with provider at: " + sdf.format(finishProcessingData));
+        @Override
+        public void rebase() {
+            cycleTasks = new TaskBarrier(fetchExecutor);
+            pipeline.rebase();
+        }
     }
 
     /**
-     * Return a list of change Lo objects corresponding to the pages of the
-     * change log after requesting them from the change log url. The pages of
-     * the change log will be requested using the change log segmentation until
-     * the last change event which was processed is found. The change log url is
-     * retrieved from the trs object passes as a parameter.
-     *
-     * @param updatedTrs the trs object retrieved after retrieving it using the trs uri
-     *
-     * @return the pages of the change log of this trs provider
+     * Executor used by the handlers created without one; created on first use.
      */
-    private List<ChangeLog> fetchUpdatedChangeLogs(TrackedResourceSet updatedTrs) {
-
-        ChangeLog firstChangeLog = updatedTrs.getChangeLog();
-        List<ChangeLog> changeLogs = new ArrayList<>();
-        boolean foundSyncEvent;
-
-        foundSyncEvent = fetchRemoteChangeLogs(firstChangeLog, changeLogs);
-        if (!foundSyncEvent) {
-            lastProcessedChangeEventUri = null;
-            throw new ServerRollBackException(
-                    "The sync event can not be found. The sever provinding the trs at: " +
-                            trsUriBase + " seems to " + "have been rollecd back to a previous " +
-                            "state");
-        }
-        return changeLogs;
+    private static class DefaultFetchExecutorHolder {
+        private static final Executor EXECUTOR = TrsConsumerUtils.boundedFetchExecutor(
+                TrsConsumerConfiguration.DEFAULT_FETCH_CONCURRENCY,
+                TrsConsumerConfiguration.DEFAULT_FETCH_QUEUE_CAPACITY);
     }
 
+    /**
+     * Executor used by the handlers created without one; created on first use.
+     */
+    private static class DefaultTransformExecutorHolder {
+        private static final Executor EXECUTOR = TrsConsumerUtils.boundedTransformExecutor(
+                TrsConsumerConfiguration.DEFAULT_TRANSFORM_CONCURRENCY,
+                TrsConsumerConfiguration.DEFAULT_FETCH_QUEUE_CAPACITY);
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import com.google.common.hash.HashCode;
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.ContentHashIndex;
+import org.eclipse.lyo.trs.client.util.ModelHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes on to the wrapped handler only the base members and change events whose representation
+ * differs from the one last written, comparing {@link ModelHasher isomorphism-stable hashes}.
+ * A rebase of an already synchronised base then costs the fetches only.
+ * <p>
+ * The hashes are computed in the prepare stage, i.e. in parallel when run by the
+ * {@link ConcurrentTrsProviderHandler}. The hashes of a cycle are only added to the index, and the
+ * index saved, once the wrapped handler finished the cycle without an exception. A handler that
+ * silently drops failed writes should therefore not be wrapped, or should rebase after a failure.
+ *
+ * @since 4.0.0
+ */
+public class ContentHashSkippingHandler implements IStagedProviderEventHandler<Runnable> {
+    private final static Logger log = LoggerFactory.getLogger(ContentHashSkippingHandler.class);
+
+    private final IProviderEventHandler handler;
+    private final ContentHashIndex index;
+    /**
+     * Hashes written in the current cycle; an empty optional for the removed resources
+     */
+    private final Map<URI, Optional<HashCode>> cycleHashes = new ConcurrentHashMap<>();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public ContentHashSkippingHandler(final IProviderEventHandler handler,
+            final ContentHashIndex index) {
+        this.handler = handler;
+        this.index = index;
+    }
+
+    @Override
+    public void finishCycle() {
+        handler.finishCycle();
+        for (Map.Entry<URI, Optional<HashCode>> entry : cycleHashes.entrySet()) {
+            if (entry.getValue().isPresent()) {
+                index.put(entry.getKey(), entry.getValue().get());
+            } else {
+                index.remove(entry.getKey());
+            }
+        }
+        final boolean changed = !cycleHashes.isEmpty();
+        cycleHashes.clear();
+        if (changed) {
+            index.save();
+        }
+    }
+
+    @Override
+    public void handleBaseMember(final BaseMember baseMember) {
+        commit(prepareBaseMember(baseMember));
+    }
+
+    @Override
+    public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+        commit(prepareChangeEvent(eventMessageTR));
+    }
+
+    @Override
+    public void rebase() {
+        cycleHashes.clear();
+        handler.rebase();
+    }
+
+    @Override
+    public Runnable prepareBaseMember(final BaseMember baseMember) {
+        final URI uri = baseMember.getUri();
+        final HashCode hash = ModelHasher.hash(baseMember.getModel());
+        if (hash.equals(index.get(uri))) {
+            skip(uri);
+            return null;
+        }
+        final Runnable write;
+        if (handler instanceof IStagedProviderEventHandler) {
+            write = stagedWrite((IStagedProviderEventHandler<?>) handler,
+                    ((IStagedProviderEventHandler<?>) handler).prepareBaseMember(baseMember));
+        } else {
+            write = () -> handler.handleBaseMember(baseMember);
+        }
+        return () -> {
+            write.run();
+            cycleHashes.put(uri, Optional.of(hash));
+        };
+    }
+
+    @Override
+    public Runnable prepareChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+        final ChangeEvent event = eventMessageTR.getChangeEvent();
+        final URI uri = event.getChanged();
+        final Model model = eventMessageTR.getTrackedResourceModel();
+        final Optional<HashCode> hash;
+        if (event instanceof Deletion || model == null) {
+            hash = Optional.empty();
+        } else {
+            hash = Optional.of(ModelHasher.hash(model));
+            if (hash.get().equals(index.get(uri))) {
+                skip(uri);
+                return null;
+            }
+        }
+        final Runnable write;
+        if (handler instanceof IStagedProviderEventHandler) {
+            write = stagedWrite((IStagedProviderEventHandler<?>) handler,
+                    ((IStagedProviderEventHandler<?>) handler).prepareChangeEvent(
+                            eventMessageTR));
+        } else {
+            write = () -> handler.handleChangeEvent(eventMessageTR);
+        }
+        return () -> {
+            write.run();
+            cycleHashes.put(uri, hash);
+        };
+    }
+
+    @Override
+    public void commit(final Runnable update) {
+        if (update != null) {
+            update.run();
+        }
+    }
+
+    /**
+     * @return number of base members and change events not passed on because their
+     * representation was unchanged
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    private void skip(final URI uri) {
+        skipped.incrementAndGet();
+        log.trace("Representation of {} is unchanged, skipping it", uri);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <U> Runnable stagedWrite(final IStagedProviderEventHandler<U> handler,
+            final Object update) {
+        return () -> {
+            if (update != null) {
+                handler.commit((U) update);
+            }
+        };
+    }
+}
@@ -12,15 +12,45 @@
 
 package org.eclipse.lyo.trs.client.handlers;
 
+import java.util.List;
 import org.eclipse.lyo.trs.client.model.BaseMember;
 import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
 
 public interface IProviderEventHandler {
+    /**
+     * Commit everything handed over since the previous call. The provider handlers only save
+     * their cursor once this returns, so a handler may buffer until then.
+     */
     void finishCycle();
 
     void handleBaseMember(BaseMember baseMember);
 
     void handleChangeEvent(ChangeEventMessageTR eventMessageTR);
 
+    /**
+     * Handle a chunk of base members, e.g. with a single bulk write. The provider handlers pass
+     * chunks of up to a base page and do not hand the same resource over twice within a cycle.
+     * By default each member is handled on its own.
+     *
+     * @since 4.0.0
+     */
+    default void handleBaseMembers(List<BaseMember> baseMembers) {
+        for (BaseMember baseMember : baseMembers) {
+            handleBaseMember(baseMember);
+        }
+    }
+
+    /**
+     * Handle a chunk of change events, in change log order. By default each event is handled on
+     * its own.
+     *
+     * @since 4.0.0
+     */
+    default void handleChangeEvents(List<ChangeEventMessageTR> eventMessages) {
+        for (ChangeEventMessageTR eventMessage : eventMessages) {
+            handleChangeEvent(eventMessage);
+        }
+    }
+
     void rebase();
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+
+/**
+ * An event handler that separates the (CPU bound) preparation of an update from committing it to
+ * the sink. The concurrent provider handler prepares the updates in parallel and commits them one
+ * at a time; the {@code handle*} methods are expected to be equivalent to preparing and committing
+ * right away.
+ *
+ * @param <U> the prepared update, e.g. a SPARQL Update string
+ *
+ * @since 4.0.0
+ */
+public interface IStagedProviderEventHandler<U> extends IProviderEventHandler {
+    /**
+     * Prepare the update for a base member. Called concurrently from several threads.
+     *
+     * @return the update or null if there is nothing to commit
+     */
+    U prepareBaseMember(BaseMember baseMember);
+
+    /**
+     * Prepare the update for a change event. Called concurrently from several threads.
+     *
+     * @return the update or null if there is nothing to commit
+     */
+    U prepareChangeEvent(ChangeEventMessageTR eventMessageTR);
+
+    /**
+     * Commit a prepared update. Never called concurrently for the same handler.
+     */
+    void commit(U update);
+}
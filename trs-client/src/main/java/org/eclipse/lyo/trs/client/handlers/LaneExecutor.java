@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the tasks with the same key one after the other in submission order, while the tasks of
+ * different keys run in parallel on the underlying (shared) executor. Keying the tasks by the
+ * tracked resource makes all writes to the same graph apply in change log order. The queue of a
+ * key only exists while it has tasks, so the parallelism is only limited by the executor.
+ * <p>
+ * At most {@code maxPending} tasks can be queued over all keys; submitting more blocks the caller.
+ *
+ * @since 4.0.0
+ */
+class LaneExecutor {
+    private final static Logger log = LoggerFactory.getLogger(LaneExecutor.class);
+
+    private final Executor executor;
+    /**
+     * Lanes with queued or running tasks, by key; also guards the task queues of the lanes
+     */
+    private final Map<Object, Lane> lanes = new HashMap<>();
+    private final Semaphore pendingPermits;
+
+    LaneExecutor(final Executor executor, final int maxPending) {
+        this.executor = executor;
+        this.pendingPermits = new Semaphore(maxPending);
+    }
+
+    /**
+     * @return the lane on which all the tasks for the given key run
+     */
+    Executor lane(final Object key) {
+        return task -> execute(key, task);
+    }
+
+    private void execute(final Object key, final Runnable task) {
+        pendingPermits.acquireUninterruptibly();
+        final Lane lane;
+        synchronized (lanes) {
+            final Lane draining = lanes.get(key);
+            if (draining != null) {
+                draining.tasks.add(task);
+                return;
+            }
+            lane = new Lane(key);
+            lane.tasks.add(task);
+            lanes.put(key, lane);
+        }
+        try {
+            executor.execute(lane::drain);
+        } catch (RejectedExecutionException e) {
+            // other submitters may have queued behind us; keep the lane going ourselves
+            log.debug("Executor rejected the lane, draining it on the calling thread");
+            lane.drain();
+        }
+    }
+
+    private class Lane {
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        private Lane(final Object key) {
+            this.key = key;
+        }
+
+        private void drain() {
+            while (true) {
+                final Runnable task;
+                synchronized (lanes) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        lanes.remove(key);
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Task failed on its lane", e);
+                } finally {
+                    pendingPermits.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.IAsyncTrackedResourceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the base members and change events of a provider in three stages:
+ * <ol>
+ * <li>fetch the representation through the {@link IAsyncTrackedResourceClient}, without holding
+ * a thread of the pipeline while the request is in flight;</li>
+ * <li>prepare the update, in parallel on the transform executor;</li>
+ * <li>commit the update to the event handler, one at a time on a thread of this pipeline.</li>
+ * </ol>
+ * At most {@code maxPending} base members and change events are between their submission and
+ * their commit; submitting more blocks the polling thread. The representations of the same
+ * resource are handed over to the transform stage in submission order, and the work for the same
+ * resource runs on its own lane in the later stages, so it is committed in submission order.
+ * <p>
+ * A plain {@link IProviderEventHandler} receives the base members and change events in chunks of
+ * up to {@code chunkSize}; the last chunk of a cycle is delivered by {@link #finishCycle()}.
+ *
+ * @since 4.0.0
+ */
+class ProviderEventPipeline {
+    private final static Logger log = LoggerFactory.getLogger(ProviderEventPipeline.class);
+
+    private final IAsyncTrackedResourceClient trsClient;
+    private final IStagedProviderEventHandler<Object> handler;
+    private final LaneExecutor transformLanes;
+    /**
+     * Hands the fetched representations over to the transform lanes, so that neither the thread
+     * completing the fetch nor the submitting thread runs the transform stage
+     */
+    private final Executor handOverExecutor;
+    private final LaneExecutor sinkLane;
+    /**
+     * Key of the single sink lane, so that the updates are committed one at a time in hand-over
+     * order
+     */
+    private static final Object SINK = new Object();
+    /**
+     * Held by every base member and change event from its submission until its commit
+     */
+    private final Semaphore inFlight;
+    /**
+     * Latest hand-over to the transform stage still in flight, by resource
+     */
+    private final Map<URI, CompletableFuture<Void>> handOvers = new HashMap<>();
+
+    /**
+     * @param maxPending max number of base members and change events in the pipeline
+     * @param chunkSize  max number of base members or change events passed to a plain event
+     *                   handler at once
+     */
+    ProviderEventPipeline(final IAsyncTrackedResourceClient trsClient,
+            final IProviderEventHandler handler, final Executor transformExecutor,
+            final int maxPending, final int chunkSize) {
+        this.trsClient = trsClient;
+        this.handler = staged(handler, chunkSize);
+        this.inFlight = new Semaphore(maxPending);
+        this.transformLanes = new LaneExecutor(transformExecutor, maxPending);
+        // the sink must not share threads with the stages blocked on it
+        final Executor sinkExecutor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("trs-sink-%d").setDaemon(true).build());
+        this.sinkLane = new LaneExecutor(sinkExecutor, maxPending);
+        // may end up preparing the updates itself if the transform executor runs them on the
+        // caller, e.g. once its queue is full
+        this.handOverExecutor = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("trs-handover-%d").setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Submit a base member; if it can not be fetched, the cycle fails like for a change event, so
+     * that the indexing is resumed with its base page
+     */
+    void submitBaseMember(final TaskBarrier cycle, final URI baseMemberUri) {
+        submit(cycle, baseMemberUri, () -> trsClient.fetchTRSRemoteResource(baseMemberUri),
+                model -> handler.prepareBaseMember(new BaseMember(baseMemberUri, model)));
+    }
+
+    void submitChangeEvent(final TaskBarrier cycle, final ChangeEvent changeEvent) {
+        final URI changed = changeEvent.getChanged();
+        submit(cycle, changed, () -> changeEvent instanceof Deletion
+                        ? CompletableFuture.completedFuture(null)
+                        : trsClient.fetchTRSRemoteResource(changed),
+                model -> handler.prepareChangeEvent(new ChangeEventMessageTR(changeEvent, model)));
+    }
+
+    /**
+     * Hand the remaining updates of the cycle over to the event handler and finish the cycle.
+     * Must be called once all the tasks of the cycle have completed.
+     */
+    void finishCycle() {
+        handler.finishCycle();
+    }
+
+    /**
+     * Drop the updates not yet handed over to the event handler and rebase it.
+     */
+    void rebase() {
+        handler.rebase();
+    }
+
+    /**
+     * Start the fetch and hand the representation over to the transform stage once the earlier
+     * submissions for the same resource have been handed over. The hand-over is only published
+     * under the lock and chained outside of it, on the hand-over executor.
+     */
+    private void submit(final TaskBarrier cycle, final URI resource,
+            final Supplier<CompletableFuture<Model>> fetch, final Function<Model, Object> prepare) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the pipeline", e);
+        }
+        final CompletableFuture<Void> handOver = new CompletableFuture<>();
+        final CompletableFuture<Model> fetched;
+        try {
+            fetched = fetch.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        final CompletableFuture<Void> previous;
+        synchronized (handOvers) {
+            previous = handOvers.put(resource, handOver);
+        }
+        final CompletableFuture<Model> inOrder = previous == null ? fetched
+                : previous.handle((r, t) -> null).thenCompose(ignored -> fetched);
+        inOrder.thenAcceptAsync(model -> cycle.execute(transformLanes.lane(resource),
+                () -> prepareAndCommit(cycle, resource, prepare, model)), handOverExecutor)
+                .whenComplete((r, t) -> {
+                    if (t != null) {
+                        handOver.completeExceptionally(t);
+                    } else {
+                        handOver.complete(null);
+                    }
+                });
+        handOver.whenComplete((r, t) -> {
+            synchronized (handOvers) {
+                handOvers.remove(resource, handOver);
+            }
+            if (t != null) {
+                // never reached the transform stage
+                inFlight.release();
+            }
+        });
+        cycle.track(handOver);
+    }
+
+    private void prepareAndCommit(final TaskBarrier cycle, final URI resource,
+            final Function<Model, Object> prepare, final Model model) {
+        boolean committing = false;
+        try {
+            final Object update = prepare.apply(model);
+            if (update == null) {
+                log.debug("Nothing to commit for {}", resource);
+                return;
+            }
+            cycle.execute(sinkLane.lane(SINK), () -> {
+                try {
+                    handler.commit(update);
+                } finally {
+                    inFlight.release();
+                }
+            });
+            committing = true;
+        } finally {
+            if (!committing) {
+                inFlight.release();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static IStagedProviderEventHandler<Object> staged(
+            final IProviderEventHandler handler, final int chunkSize) {
+        if (handler instanceof IStagedProviderEventHandler) {
+            return (IStagedProviderEventHandler<Object>) handler;
+        }
+        return new UnstagedHandler(handler, chunkSize);
+    }
+
+    /**
+     * Does all the work of a plain event handler in the commit stage, in chunks. A chunk only
+     * holds base members or only change events; the updates are handed over in commit order.
+     */
+    private static class UnstagedHandler implements IStagedProviderEventHandler<Object> {
+        private final IProviderEventHandler handler;
+        private final int chunkSize;
+        /**
+         * Only touched on the sink lane and, once the cycle tasks have completed, by the polling
+         * thread
+         */
+        private List<BaseMember> baseMembers = new ArrayList<>();
+        private List<ChangeEventMessageTR> changeEvents = new ArrayList<>();
+
+        private UnstagedHandler(final IProviderEventHandler handler, final int chunkSize) {
+            this.handler = handler;
+            this.chunkSize = Math.max(chunkSize, 1);
+        }
+
+        @Override
+        public Object prepareBaseMember(final BaseMember baseMember) {
+            return baseMember;
+        }
+
+        @Override
+        public Object prepareChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+            return eventMessageTR;
+        }
+
+        @Override
+        public void commit(final Object update) {
+            if (update instanceof BaseMember) {
+                flushChangeEvents();
+                baseMembers.add((BaseMember) update);
+                if (baseMembers.size() >= chunkSize) {
+                    flushBaseMembers();
+                }
+            } else {
+                flushBaseMembers();
+                changeEvents.add((ChangeEventMessageTR) update);
+                if (changeEvents.size() >= chunkSize) {
+                    flushChangeEvents();
+                }
+            }
+        }
+
+        @Override
+        public void finishCycle() {
+            flushBaseMembers();
+            flushChangeEvents();
+            handler.finishCycle();
+        }
+
+        @Override
+        public void handleBaseMember(final BaseMember baseMember) {
+            handler.handleBaseMember(baseMember);
+        }
+
+        @Override
+        public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+            handler.handleChangeEvent(eventMessageTR);
+        }
+
+        @Override
+        public void rebase() {
+            baseMembers.clear();
+            changeEvents.clear();
+            handler.rebase();
+        }
+
+        private void flushBaseMembers() {
+            if (!baseMembers.isEmpty()) {
+                final List<BaseMember> chunk = baseMembers;
+                baseMembers = new ArrayList<>();
+                handler.handleBaseMembers(chunk);
+            }
+        }
+
+        private void flushChangeEvents() {
+            if (!changeEvents.isEmpty()) {
+                final List<ChangeEventMessageTR> chunk = changeEvents;
+                changeEvents = new ArrayList<>();
+                handler.handleChangeEvents(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the polling cycles of a single TRS provider handler.
+ */
+public class ProviderHandlerMetrics {
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong idleCycles = new AtomicLong();
+
+    /**
+     * A cycle that processed the change log (and possibly the base).
+     */
+    public void recordCycle() {
+        cycles.incrementAndGet();
+    }
+
+    /**
+     * A cycle that ended early because the provider had no new change events.
+     */
+    public void recordIdleCycle() {
+        cycles.incrementAndGet();
+        idleCycles.incrementAndGet();
+    }
+
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    public long getIdleCycles() {
+        return idleCycles.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ProviderHandlerMetrics{" + "cycles=" + cycles + ", idleCycles=" + idleCycles + '}';
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import org.eclipse.lyo.trs.client.checkpoint.ICheckpointStore;
+import org.eclipse.lyo.trs.client.config.TrsConsumerConfiguration;
+import org.eclipse.lyo.trs.client.util.BlockingTrackedResourceClient;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
+
+/**
+ * Options of a {@link TrsProviderHandler} or a {@link ConcurrentTrsProviderHandler}, read when the
+ * handler is created. Options that only apply to one of them are ignored by the other one.
+ *
+ * @since 4.0.0
+ */
+public class ProviderHandlerOptions {
+    private Executor fetchExecutor;
+    private int prefetchWindow = 1;
+    private Executor transformExecutor;
+    private int maxPending = TrsConsumerConfiguration.DEFAULT_FETCH_QUEUE_CAPACITY;
+    private int chunkSize = TrsConsumerConfiguration.DEFAULT_HANDLER_CHUNK_SIZE;
+    private ICheckpointStore checkpointStore;
+    private Path spillDirectory;
+    private int spillThreshold = TrsConsumerConfiguration.DEFAULT_SPILL_THRESHOLD;
+    private int maxFailedCycles = TrsConsumerConfiguration.DEFAULT_MAX_FAILED_CYCLES;
+
+    public Executor getFetchExecutor() {
+        return fetchExecutor;
+    }
+
+    /**
+     * @param fetchExecutor long-lived executor, normally shared between the providers, on which
+     *                      the representations are fetched. Should be bounded, see
+     *                      {@link TrsConsumerUtils#boundedFetchExecutor(int, int)}. The concurrent
+     *                      handler does not use it for a {@link BlockingTrackedResourceClient},
+     *                      whose asynchronous client fetches the representations instead. Null
+     *                      (default) fetches on the polling thread in the sequential handler and
+     *                      on a shared default executor in the concurrent one.
+     */
+    public void setFetchExecutor(final Executor fetchExecutor) {
+        this.fetchExecutor = fetchExecutor;
+    }
+
+    public int getPrefetchWindow() {
+        return prefetchWindow;
+    }
+
+    /**
+     * @param prefetchWindow number of representations the sequential handler has in flight on
+     *                       the fetch executor; the change events are still handled in change
+     *                       log order. 1 (default) fetches them one by one on the polling thread.
+     */
+    public void setPrefetchWindow(final int prefetchWindow) {
+        this.prefetchWindow = prefetchWindow;
+    }
+
+    public Executor getTransformExecutor() {
+        return transformExecutor;
+    }
+
+    /**
+     * @param transformExecutor long-lived executor on which the concurrent handler prepares the
+     *                          updates of an {@link IStagedProviderEventHandler}, see
+     *                          {@link TrsConsumerUtils#boundedTransformExecutor(int, int)}; null
+     *                          (default) for a shared default executor
+     */
+    public void setTransformExecutor(final Executor transformExecutor) {
+        this.transformExecutor = transformExecutor;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * @param maxPending max number of base members and change events in the pipeline of the
+     *                   concurrent handler before its polling thread is blocked
+     */
+    public void setMaxPending(final int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize max number of base members or change events passed to the event handler
+     *                  at once, unless the concurrent handler is given an
+     *                  {@link IStagedProviderEventHandler}
+     */
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public ICheckpointStore getCheckpointStore() {
+        return checkpointStore;
+    }
+
+    /**
+     * @param checkpointStore where the cursor is saved after each commit of the event handler and
+     *                        resumed from when the handler is created; null (default) to start
+     *                        from the base every time
+     */
+    public void setCheckpointStore(final ICheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @param spillDirectory directory of the change log spill files, null (default) for the
+     *                       default temporary directory
+     */
+    public void setSpillDirectory(final Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * @param spillThreshold max number of change events kept in memory while the change log is
+     *                       traversed back to the sync point; a longer change log is spilled to
+     *                       disk and replayed in windows of that many events
+     */
+    public void setSpillThreshold(final int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public int getMaxFailedCycles() {
+        return maxFailedCycles;
+    }
+
+    /**
+     * @param maxFailedCycles number of cycles in a row that may fail at the same cursor once the
+     *                        change log was read, e.g. on a change event whose resource is gone,
+     *                        before the provider is rebased; 0 to always resume at the cursor
+     */
+    public void setMaxFailedCycles(final int maxFailedCycles) {
+        this.maxFailedCycles = maxFailedCycles;
+    }
+}
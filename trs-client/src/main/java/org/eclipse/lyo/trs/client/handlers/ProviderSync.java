@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import com.google.common.collect.Iterators;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.apache.jena.vocabulary.RDF;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.checkpoint.ICheckpointStore;
+import org.eclipse.lyo.trs.client.exceptions.ServerRollBackException;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.eclipse.lyo.trs.client.util.ChangeLogBuffer;
+import org.eclipse.lyo.trs.client.util.ITrackedResourceClient;
+import org.eclipse.lyo.trs.client.util.ProviderUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The polling cycle shared by the provider handlers. Finds the change events since the cursor,
+ * spilling a long change log to disk, indexes the base when there is no cursor yet and saves the
+ * cursor to the checkpoint store, if any, once the event handler committed what it was handed
+ * over. How the base members and change events are handed over is up to the {@link Cycle} of the
+ * provider handler. Only used by the polling thread.
+ *
+ * @since 4.0.0
+ */
+class ProviderSync {
+    private final static Logger log = LoggerFactory.getLogger(ProviderSync.class);
+
+    /**
+     * How a provider handler hands the base members and change events over to its event handler
+     */
+    interface Cycle {
+        /**
+         * Hand the members of the current base page over, in page order
+         */
+        void indexBasePage(List<URI> baseMembers);
+
+        /**
+         * Hand the change events over, in change log order
+         */
+        void processChangeEvents(List<ChangeEvent> changeEvents);
+
+        /**
+         * Commit everything handed over since the previous call
+         */
+        void finishCycle();
+
+        void rebase();
+    }
+
+    private final URI trsUri;
+    private final ITrackedResourceClient trsClient;
+    private final Cycle cycle;
+    /**
+     * Where the committed cursor is saved, null to keep it in memory
+     */
+    private final ICheckpointStore checkpointStore;
+    /**
+     * Where and beyond how many change events the change log is spilled to disk while catching up
+     */
+    private final Path spillDirectory;
+    private final int spillThreshold;
+    /**
+     * Number of cycles in a row that may fail at the same cursor before the provider is rebased
+     */
+    private final int maxFailedCycles;
+    private final ProviderHandlerMetrics metrics = new ProviderHandlerMetrics();
+    /**
+     * The last change event handed over and its trs:order, null if not known yet
+     */
+    private URI lastProcessedChangeEventUri;
+    private Integer lastProcessedChangeEventOrder;
+    /**
+     * The base page being indexed and the number of its members handed over so far, in page
+     * order; null when the base is not being indexed
+     */
+    private URI indexedBasePage;
+    private List<URI> indexedBasePageMembers;
+    private int indexedBaseMembers;
+    /**
+     * The cursor as of the last commit of the event handler, null if nothing was committed
+     */
+    private Checkpoint committed;
+    /**
+     * Whether anything was handed over since the last commit
+     */
+    private boolean handedOver;
+    /**
+     * Whether the current cycle got past reading the change log
+     */
+    private boolean processing;
+    /**
+     * The cursor the last cycles failed at and how many of them in a row
+     */
+    private Checkpoint failedAt;
+    private int failedCycles;
+
+    ProviderSync(final URI trsUri, final ITrackedResourceClient trsClient,
+            final ProviderHandlerOptions options, final Cycle cycle) {
+        this.trsUri = trsUri;
+        this.trsClient = trsClient;
+        this.cycle = cycle;
+        this.checkpointStore = options.getCheckpointStore();
+        this.spillDirectory = options.getSpillDirectory();
+        this.spillThreshold = options.getSpillThreshold();
+        this.maxFailedCycles = options.getMaxFailedCycles();
+        if (checkpointStore != null) {
+            committed = checkpointStore.load(trsUri);
+            if (committed != null) {
+                log.info("Resuming TRS Provider {} from {}", trsUri, committed);
+                restore(committed);
+            }
+        }
+    }
+
+    ProviderHandlerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Run a polling cycle. If an exception is thrown it's logged, what was handed over to the
+     * event handler before it is committed and the next cycle resumes from the last processed
+     * change event or, while indexing, from the last indexed base member. Only if the sync point
+     * or the cutoff event can no longer be found, or if the cycles keep failing at the same cursor
+     * once the change log was read, is the cursor dropped, so that the processing of the base
+     * will be done all over again.
+     */
+    void update() {
+        try {
+            pollAndProcessChanges();
+            failedAt = null;
+            failedCycles = 0;
+        } catch (ServerRollBackException e) {
+            log.warn("Force rebase: {}", e.getMessage());
+            rebase();
+        } catch (Exception e) {
+            if (handedOver) {
+                try {
+                    commit();
+                } catch (RuntimeException commitFailure) {
+                    log.warn("Failed to commit the events handled so far for {}", trsUri,
+                            commitFailure);
+                }
+            }
+            if (indexedBasePage != null) {
+                log.warn("Failed to index the base of {}, resuming at member {} of page {}",
+                        trsUri, indexedBaseMembers, indexedBasePage, e);
+            } else {
+                log.warn("Failed to process the changes of {}, resuming after {}", trsUri,
+                        lastProcessedChangeEventUri, e);
+            }
+            // an unreachable provider does not count, it is not stuck at the cursor
+            if (processing) {
+                final Checkpoint cursor = position();
+                failedCycles = Objects.equals(cursor, failedAt) ? failedCycles + 1 : 1;
+                failedAt = cursor;
+                if (maxFailedCycles > 0 && failedCycles >= maxFailedCycles) {
+                    log.error("TRS Provider {} failed {} cycles in a row at {}, rebasing",
+                            trsUri, failedCycles, cursor);
+                    rebase();
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the cursor past the given members of the current base page; the members left out
+     * keep the page order, so the last one is found further on
+     */
+    void baseMembersHandedOver(final URI lastBaseMember) {
+        while (!indexedBasePageMembers.get(indexedBaseMembers).equals(lastBaseMember)) {
+            indexedBaseMembers++;
+        }
+        indexedBaseMembers++;
+    }
+
+    /**
+     * Move the cursor past the given change event
+     */
+    void changeEventsHandedOver(final ChangeEvent lastChangeEvent) {
+        lastProcessedChangeEventUri = lastChangeEvent.getAbout();
+        lastProcessedChangeEventOrder = lastChangeEvent.getOrder();
+    }
+
+    /**
+     * Request the pages of the change log from the TRS provider sequentially through the
+     * traversal of the paging information until the last processed change event is found.
+     *
+     * @param currentChangeLog the first change log from which the next page will be retrieved to
+     *                         retrieve the other pages of the change log
+     * @param changeLogs       receives the pages of the change log
+     *
+     * @return true if the last processed change event is found, false otherwise
+     */
+    boolean fetchRemoteChangeLogs(ChangeLog currentChangeLog, Consumer<ChangeLog> changeLogs) {
+        boolean foundChangeEvent = false;
+        URI previousChangeLog;
+        do {
+            if (currentChangeLog != null) {
+                changeLogs.accept(currentChangeLog);
+                if (lastProcessedChangeEventOrder != null) {
+                    final int minOrder = ProviderUtil.minOrder(currentChangeLog);
+                    if (minOrder <= lastProcessedChangeEventOrder) {
+                        foundChangeEvent = ProviderUtil.findEvent(lastProcessedChangeEventUri,
+                                lastProcessedChangeEventOrder, currentChangeLog) != null;
+                        // no older page can hold the sync point, unless the events are ordered
+                        // alike, e.g. because the provider leaves out trs:order; those are
+                        // walked back by URI
+                        if (foundChangeEvent || minOrder < lastProcessedChangeEventOrder) {
+                            break;
+                        }
+                    }
+                } else {
+                    final ChangeEvent syncEvent = ProviderUtil.findEvent(
+                            lastProcessedChangeEventUri, currentChangeLog);
+                    if (syncEvent != null) {
+                        lastProcessedChangeEventOrder = syncEvent.getOrder();
+                        foundChangeEvent = true;
+                        break;
+                    }
+                }
+                previousChangeLog = currentChangeLog.getPrevious();
+                currentChangeLog = trsClient.fetchRemoteChangeLog(previousChangeLog);
+            } else {
+                break;
+            }
+        } while (!RDF.nil.getURI().equals(previousChangeLog.toString()));
+        return foundChangeEvent;
+    }
+
+    private void pollAndProcessChanges() {
+        log.info("started dealing with TRS Provider: " + trsUri);
+        processing = false;
+
+        TrackedResourceSet updatedTrs = trsClient.extractRemoteTrs(trsUri);
+        if (lastProcessedChangeEventUri != null && indexedBasePage == null
+                && ProviderUtil.isNewestEvent(lastProcessedChangeEventUri,
+                updatedTrs.getChangeLog())) {
+            log.debug("No new change events from TRS Provider: {}", trsUri);
+            metrics.recordIdleCycle();
+            return;
+        }
+        final Iterator<BasePage> basePages = fetchBasePages(updatedTrs);
+
+        // Retrieve all change log pages until the page containing the last processed change event
+        try (ChangeLogBuffer changeLogs = fetchUpdatedChangeLogs(updatedTrs)) {
+            processing = true;
+            if (changeLogs.isSpilled()) {
+                catchUp(changeLogs, basePages);
+            } else {
+                /* Optimize the list of changes by removing successive update / creation events
+                for the same resource and overwriting update / creation events of a resource with
+                more recent deletion events.
+                 */
+                final List<ChangeEvent> compressedChanges = ProviderUtil.optimizedChangesList(
+                        changeLogs.getPages(), lastProcessedChangeEventUri);
+                if (basePages != null) {
+                    indexBase(basePages, ProviderUtil.changedResources(compressedChanges));
+                }
+                processChangeEvents(compressedChanges);
+                commit();
+            }
+        }
+
+        metrics.recordCycle();
+        log.info("finished dealing with TRS Provider: " + trsUri);
+    }
+
+    /**
+     * @return the pages of the base, starting with the page the indexing is resumed at, if the
+     * base is being indexed or is to be indexed because there is no cursor yet; null otherwise
+     */
+    private Iterator<BasePage> fetchBasePages(TrackedResourceSet updatedTrs) {
+        final Iterator<BasePage> basePages;
+        final BasePage basePage;
+        if (lastProcessedChangeEventUri == null) {
+            // the first page of the base holds the cutoff event, the remaining pages are fetched
+            // one by one while indexing
+            basePages = trsClient.fetchRemoteBasePages(updatedTrs.getBase());
+            basePage = basePages.next();
+
+            lastProcessedChangeEventUri = basePage.getCutoffEvent();
+            lastProcessedChangeEventOrder = null;
+            indexedBasePage = basePage.getUri();
+            indexedBaseMembers = 0;
+        } else if (indexedBasePage != null) {
+            log.info("Resuming the indexing of the base of {} at member {} of page {}",
+                    trsUri, indexedBaseMembers, indexedBasePage);
+            basePages = trsClient.fetchRemoteBasePages(indexedBasePage);
+            basePage = basePages.next();
+            checkCutoffEvent(basePage);
+        } else {
+            return null;
+        }
+        return Iterators.concat(Iterators.singletonIterator(basePage), basePages);
+    }
+
+    /**
+     * Catch up with a change log that was spilled to disk. The base is indexed first, if needed,
+     * in a cycle of its own and without leaving out the members changed since the cutoff event.
+     * The spilled change events are then handled window by window, each window as a cycle of its
+     * own, so the cursor moves forward as the catch-up goes.
+     */
+    private void catchUp(ChangeLogBuffer changeLogs, Iterator<BasePage> basePages) {
+        log.info("Catching up with {} change events from TRS Provider: {}",
+                changeLogs.getEvents(), trsUri);
+        if (basePages != null) {
+            indexBase(basePages, Collections.emptySet());
+            // the first window may change the same resources as the base
+            commit();
+        }
+
+        changeLogs.replay(lastProcessedChangeEventUri, lastProcessedChangeEventOrder, window -> {
+            processChangeEvents(window);
+            commit();
+        });
+    }
+
+    /**
+     * The indexing of a base is only resumed against the same cutoff event, the pages of the base
+     * and the order of their members being stable until the base is regenerated.
+     *
+     * @throws ServerRollBackException if the base was regenerated since the indexing started
+     */
+    private void checkCutoffEvent(BasePage basePage) {
+        if (basePage.getCutoffEvent() != null && !basePage.getCutoffEvent().equals(
+                lastProcessedChangeEventUri)) {
+            throw new ServerRollBackException("The base of " + trsUri + " has a new cutoff " +
+                    "event " + basePage.getCutoffEvent() + " since its indexing started");
+        }
+    }
+
+    /**
+     * Hand the base members over page by page, leaving out the changed resources. Every page but
+     * the last one is committed on its own; the last one is committed with the cycle. An
+     * interrupted indexing resumes with the first member that was not handed over, once what was
+     * handed over is committed.
+     *
+     * @throws ServerRollBackException if the page the indexing is resumed at has fewer members
+     *                                 than were already indexed, i.e. it changed in the meantime
+     */
+    private void indexBase(Iterator<BasePage> basePages, Set<URI> changedResources) {
+        while (basePages.hasNext()) {
+            final BasePage basePage = basePages.next();
+            if (!basePage.getUri().equals(indexedBasePage)) {
+                indexedBasePage = basePage.getUri();
+                indexedBaseMembers = 0;
+            }
+            indexedBasePageMembers = basePage.getMembers();
+            if (indexedBaseMembers > indexedBasePageMembers.size()) {
+                throw new ServerRollBackException("The base page " + indexedBasePage + " of " +
+                        trsUri + " has " + indexedBasePageMembers.size() + " members, " +
+                        indexedBaseMembers + " of which were already indexed");
+            }
+            final List<URI> baseMembers = ProviderUtil.baseChangeEventsOptimizationSafe(
+                    changedResources, indexedBasePageMembers.subList(indexedBaseMembers,
+                            indexedBasePageMembers.size()));
+
+            handedOver = true;
+            cycle.indexBasePage(baseMembers);
+            indexedBaseMembers = indexedBasePageMembers.size();
+            if (basePages.hasNext()) {
+                commit();
+            }
+        }
+        indexedBasePage = null;
+        indexedBasePageMembers = null;
+        indexedBaseMembers = 0;
+    }
+
+    /**
+     * Hand the change events over and move the cursor past them; it is only saved once they are
+     * committed
+     */
+    private void processChangeEvents(List<ChangeEvent> compressedChanges) {
+        if (compressedChanges.isEmpty()) {
+            return;
+        }
+        handedOver = true;
+        cycle.processChangeEvents(compressedChanges);
+        changeEventsHandedOver(compressedChanges.get(compressedChanges.size() - 1));
+    }
+
+    /**
+     * Drop the cursor and rebase the event handler, so that the base is indexed all over again
+     */
+    private void rebase() {
+        restore(null);
+        handedOver = false;
+        failedAt = null;
+        failedCycles = 0;
+        cycle.rebase();
+        committed = null;
+        checkpoint();
+    }
+
+    /**
+     * Finish the cycle of the event handler and save the cursor. If the event handler fails to
+     * finish, what it was handed over since the previous commit may be lost, so the cursor goes
+     * back to that commit.
+     */
+    private void commit() {
+        handedOver = false;
+        try {
+            cycle.finishCycle();
+        } catch (RuntimeException e) {
+            restore(committed);
+            throw e;
+        }
+        committed = position();
+        checkpoint();
+    }
+
+    /**
+     * @return the cursor, null if the base is to be indexed from scratch
+     */
+    private Checkpoint position() {
+        return lastProcessedChangeEventUri != null ? new Checkpoint(lastProcessedChangeEventUri,
+                lastProcessedChangeEventOrder, indexedBasePage, indexedBaseMembers) : null;
+    }
+
+    private void restore(Checkpoint checkpoint) {
+        lastProcessedChangeEventUri = checkpoint != null ? checkpoint.getChangeEvent() : null;
+        lastProcessedChangeEventOrder = checkpoint != null ? checkpoint.getOrder() : null;
+        indexedBasePage = checkpoint != null ? checkpoint.getBasePage() : null;
+        indexedBaseMembers = checkpoint != null ? checkpoint.getBaseMembers() : 0;
+    }
+
+    /**
+     * Save the last committed cursor to the checkpoint store, if any, and flush it. A failure is
+     * only logged: the events since the previous checkpoint are handled again after a restart.
+     */
+    private void checkpoint() {
+        if (checkpointStore == null) {
+            return;
+        }
+        try {
+            checkpointStore.save(trsUri, committed);
+            checkpointStore.flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to save the checkpoint of TRS Provider {}", trsUri, e);
+        }
+    }
+
+    /**
+     * Return the pages of the change log, requested using the change log segmentation until the
+     * last change event which was processed is found.
+     *
+     * @param updatedTrs the trs object retrieved after retrieving it using the trs uri
+     *
+     * @return the pages of the change log of this trs provider, to be closed by the caller
+     */
+    private ChangeLogBuffer fetchUpdatedChangeLogs(TrackedResourceSet updatedTrs) {
+
+        ChangeLog firstChangeLog = updatedTrs.getChangeLog();
+        ChangeLogBuffer changeLogs = new ChangeLogBuffer(spillDirectory, spillThreshold);
+        boolean foundSyncEvent;
+
+        try {
+            foundSyncEvent = fetchRemoteChangeLogs(firstChangeLog, changeLogs::add);
+        } catch (RuntimeException e) {
+            changeLogs.close();
+            throw e;
+        }
+        if (!foundSyncEvent) {
+            changeLogs.close();
+            throw new ServerRollBackException(
+                    "The sync event can not be found. The sever provinding the trs at: " +
+                            trsUri + " seems to " + "have been rollecd back to a previous " +
+                            "state");
+        }
+        return changeLogs;
+    }
+}
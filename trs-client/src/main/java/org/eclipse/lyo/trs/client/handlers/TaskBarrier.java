@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tracks the tasks of a single polling cycle that run on a shared executor, so that the cycle can
+ * wait for its own tasks without shutting the executor down.
+ *
+ * @since 4.0.0
+ */
+class TaskBarrier {
+    private final Executor executor;
+    private int pending;
+    private Throwable failure;
+
+    TaskBarrier(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run the task on the executor. Blocks or runs the task on the calling thread if the executor
+     * applies backpressure.
+     */
+    void execute(final Runnable task) {
+        execute(executor, task);
+    }
+
+    /**
+     * Run the task on another executor than the default one, e.g. on an ordered lane, and still
+     * wait for it in {@link #await()}.
+     */
+    void execute(final Executor executor, final Runnable task) {
+        synchronized (this) {
+            pending++;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    // reported by await()
+                    failed(t);
+                } finally {
+                    completed();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            completed();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for an asynchronous operation, e.g. a non-blocking fetch, in {@link #await()} like for
+     * a task; if it completes exceptionally, the cycle fails.
+     */
+    void track(final CompletionStage<?> operation) {
+        synchronized (this) {
+            pending++;
+        }
+        operation.whenComplete((result, t) -> {
+            if (t != null) {
+                failed(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            }
+            completed();
+        });
+    }
+
+    /**
+     * Wait until all tasks submitted so far have finished.
+     *
+     * @throws IllegalStateException if any of the tasks failed or the wait was interrupted
+     */
+    synchronized void await() {
+        while (pending > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + pending +
+                        " tasks", e);
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("A task of the cycle failed", failure);
+        }
+    }
+
+    private synchronized void failed(final Throwable t) {
+        if (failure == null) {
+            failure = t;
+        } else if (failure != t) {
+            failure.addSuppressed(t);
+        }
+    }
+
+    private synchronized void completed() {
+        pending--;
+        if (pending == 0) {
+            notifyAll();
+        }
+    }
+}
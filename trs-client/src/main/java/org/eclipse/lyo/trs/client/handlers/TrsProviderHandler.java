@@ -17,20 +17,24 @@
 package org.eclipse.lyo.trs.client.handlers;
 
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.vocabulary.RDF;
-import org.eclipse.lyo.core.trs.Base;
 import org.eclipse.lyo.core.trs.ChangeEvent;
-import org.eclipse.lyo.core.trs.ChangeLog;
 import org.eclipse.lyo.core.trs.Deletion;
-import org.eclipse.lyo.core.trs.TrackedResourceSet;
-import org.eclipse.lyo.trs.client.exceptions.ServerRollBackException;
 import org.eclipse.lyo.trs.client.model.BaseMember;
 import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
 import org.eclipse.lyo.trs.client.util.ITrackedResourceClient;
-import org.eclipse.lyo.trs.client.util.ProviderUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +53,18 @@ public class TrsProviderHandler implements IProviderHandler {
     private final ITrackedResourceClient trsClient;
     private final IProviderEventHandler handler;
     /**
-     * The URI of the last processed change event
+     * Executor on which the representations are fetched ahead of being handled
      */
-    private URI lastProcessedChangeEventUri;
+    private final Executor fetchExecutor;
+    /**
+     * Max number of representations fetched ahead of the one being handled (including it)
+     */
+    private final int prefetchWindow;
+    /**
+     * Max number of base members or change events handed over to the event handler at once
+     */
+    private final int chunkSize;
+    private final ProviderSync sync;
     /**
      * The entry point URI for the tracked resource set of this provider
      */
@@ -59,9 +72,23 @@ public class TrsProviderHandler implements IProviderHandler {
 
     public TrsProviderHandler(URI trsUriBase, final ITrackedResourceClient trsClient,
             final IProviderEventHandler handler) {
+        this(trsUriBase, trsClient, handler, new ProviderHandlerOptions());
+    }
+
+    /**
+     * @param options the fetch executor and prefetch window, chunk size, checkpoint store and
+     *                spill settings; the other options are ignored
+     */
+    public TrsProviderHandler(URI trsUriBase, final ITrackedResourceClient trsClient,
+            final IProviderEventHandler handler, final ProviderHandlerOptions options) {
         this.trsUriBase = trsUriBase;
         this.trsClient = trsClient;
         this.handler = handler;
+        this.prefetchWindow = Math.max(options.getPrefetchWindow(), 1);
+        this.fetchExecutor = prefetchWindow > 1 && options.getFetchExecutor() != null
+                ? options.getFetchExecutor() : Runnable::run;
+        this.chunkSize = Math.max(options.getChunkSize(), 1);
+        this.sync = new ProviderSync(trsUriBase, trsClient, options, new EventHandlerCycle());
     }
 
     @Override
@@ -71,134 +98,77 @@ public class TrsProviderHandler implements IProviderHandler {
 
     /**
      * Implementation of the method inherited from the TRSTaskHandler class. a
-     * call to the periodic processing of the change events is done. If an
-     * exception is thrown it's logged and the uri of the last processed change
-     * event is set to null. This means that during the next period the
-     * processing of the base will be done all over again
+     * call to the periodic processing of the change events is done, see
+     * {@link ProviderSync#update()}.
      */
     @Override
     public void update() {
-        try {
-            pollAndProcessChanges();
-        } catch (Exception e) {
-            // FIXME Andrew@2019-07-15: can get stuck in the loop
-            log.warn("Force rebase");
-            lastProcessedChangeEventUri = null;
-            handler.rebase();
-        }
+        sync.update();
+    }
+
+    public ProviderHandlerMetrics getMetrics() {
+        return sync.getMetrics();
     }
 
     /**
-     * Create the necessary sparql update for processing the change events and
-     * send it to the sparql update service
+     * Fetch the representation of the resource changed by the event
      *
      * @param changeEvent the change event to be processed
+     *
+     * @return the representation or null for a deletion
      */
-    private void processChangeEvent(ChangeEvent changeEvent) {
-        URI changed = changeEvent.getChanged();
-        log.info("processing resource " + changed.toString() + " change event ");
-
-        Model trsResourceModel = null;
-        if (!(changeEvent instanceof Deletion)) {
-            trsResourceModel = trsClient.fetchTRSRemoteResource(changed);
+    private Model fetchChangedResource(ChangeEvent changeEvent) {
+        if (changeEvent instanceof Deletion) {
+            return null;
         }
-
-        final ChangeEventMessageTR eventMessageTR = new ChangeEventMessageTR(changeEvent,
-                trsResourceModel);
-
-        handler.handleChangeEvent(eventMessageTR);
-
-        log.info("finished processing resource " + changed.toString() + " change event ");
+        return trsClient.fetchTRSRemoteResource(changeEvent.getChanged());
     }
 
     /**
-     * The main method for a TRS provider. This method consists on the periodic
-     * process of processing the new change events since last time and the
-     * processing of the base in case this is the first time the TRS provider
-     * thread is ran
+     * Fetch the representations of the items up to {@link #prefetchWindow} ahead and hand them
+     * over to {@code processor} strictly in the order of the list, on the calling thread.
      */
-    private void pollAndProcessChanges() {
-
-        log.info("started dealing with TRS Provider: " + trsUriBase);
-
-        TrackedResourceSet updatedTrs = trsClient.extractRemoteTrs(trsUriBase);
-        boolean indexingStage = false;
-        List<URI> baseMembers = new ArrayList<>();
-
-        // TODO Andrew@2018-02-28: ensure indexing happens when none was made or cutoff is lost
-        /*
-        Basically, two things can happen that trigger full reindex:
-        1. Some event was not processed successfully (current TRS consumer behaviour).
-        2. We are so hopelessly behind we can't locate our last processed element in the changelog.
-         */
-        if (lastProcessedChangeEventUri == null) {
-            // If it is the indexing phase retrieve the representation of the base
-            List<Base> bases = trsClient.updateBases(updatedTrs);
-
-            for (Base base : bases) {
-                baseMembers.addAll(base.getMembers());
+    private <T> void fetchAheadInOrder(List<T> items, Function<T, Model> fetcher,
+            BiConsumer<T, Model> processor) {
+        final Deque<CompletableFuture<Model>> window = new ArrayDeque<>(prefetchWindow);
+        final Iterator<T> toFetch = items.iterator();
+        for (T item : items) {
+            while (window.size() < prefetchWindow && toFetch.hasNext()) {
+                final T next = toFetch.next();
+                window.add(CompletableFuture.supplyAsync(() -> fetcher.apply(next),
+                        fetchExecutor));
             }
-
-            lastProcessedChangeEventUri = bases.get(0).getCutoffEvent();
-            indexingStage = true;
-        }
-
-        // Retrieve all change log pages until the page containing the last processed change event
-        List<ChangeLog> changeLogs = fetchUpdatedChangeLogs(updatedTrs);
-
-        /* Optimize the list of changes by removing successive update / creation events for the
-        same resource and overwriting update / creation events of a resource with more recent
-        deletion events.
-         */
-        List<ChangeEvent> compressedChanges = ProviderUtil.optimizedChangesList(changeLogs,
-                lastProcessedChangeEventUri);
-
-        /*======================================================*
-          COMMON CODE END (with concurrent TRS provider handler)
-         *======================================================*/
-
-        /* Andrew: why does indexing here happens AFTER the change events are processed WHILE the
-         concurrent handler does it first (though the change handlers don't wait for the base to
-         be updated, the ExecutorService is fired async there).
-         */
-        /*
-          If it is the indexing stage, remove the resources for which the most
-          recent change event has already been processed and then process the
-          remaining members
-         */
-        if (indexingStage) {
-//            baseChangeEventsOptimization(compressedChanges, baseMembers);
-            // FIXME Andrew@2018-02-28: the base resource gets lost at this stage
-            // Andrew@2019-01-15: not sure if I registered any resource losses before
-            baseMembers = ProviderUtil.baseChangeEventsOptimizationSafe(compressedChanges,
-                    baseMembers);
-
-            for (URI baseMemberUri : baseMembers) {
-                log.debug("Fetching TRS base from {}", baseMemberUri);
-                Model baseResourceModel = trsClient.fetchTRSRemoteResource(baseMemberUri);
-                log.debug("Processing base member '{}' creation event", baseMemberUri);
-                final BaseMember baseMember = new BaseMember(baseMemberUri, baseResourceModel);
-                handler.handleBaseMember(baseMember);
-
-                // actually it is possible to generate a Creation event per resource in base!
-                log.trace("Finished processing base member '{}' creation event", baseMemberUri);
-
+            final Model model;
+            try {
+                model = window.remove().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
             }
+            processor.accept(item, model);
         }
+    }
 
-        for (ChangeEvent changeEvent : compressedChanges) {
-            try {
-                processChangeEvent(changeEvent);
-                lastProcessedChangeEventUri = changeEvent.getAbout();
-            } catch (Exception e) {
-                log.error("Error processing {}: ", changeEvent, e);
-                return;
+    /**
+     * Like {@link #fetchAheadInOrder(List, Function, BiConsumer)}, but hand the results over in
+     * chunks of up to {@link #chunkSize}. An item that can not be fetched ends the processing;
+     * the items fetched before it in its chunk are not handed over.
+     */
+    private <T, R> void fetchAheadInChunks(List<T> items, Function<T, Model> fetcher,
+            BiFunction<T, Model, R> toMessage, Consumer<List<R>> chunkProcessor) {
+        final List<R> chunk = new ArrayList<>(Math.min(chunkSize, items.size()));
+        fetchAheadInOrder(items, fetcher, (item, model) -> {
+            chunk.add(toMessage.apply(item, model));
+            if (chunk.size() >= chunkSize) {
+                chunkProcessor.accept(new ArrayList<>(chunk));
+                chunk.clear();
             }
+        });
+        if (!chunk.isEmpty()) {
+            chunkProcessor.accept(chunk);
         }
-
-        handler.finishCycle();
-        log.info("finished dealing with TRS Provider: " + trsUriBase);
-
     }
 
     /**
@@ -222,65 +192,41 @@ public class TrsProviderHandler implements IProviderHandler {
     }
 
     /**
-     * Return a list of change Lo objects corresponding to the pages of the
-     * change log after requesting them from the change log url. The pages of
-     * the change log will be requested using the change log segmentation until
-     * the last change event which was processed is found. The change log url is
-     * retrieved from the trs object passes as a parameter.
-     *
-     * @param updatedTrs the trs object retrieved after retrieving it using the trs uri
-     *
-     * @return the pages of the change log of this trs provider
+     * Hands the base members and change events over to the event handler in chunks, on the
+     * polling thread, moving the cursor past each chunk
      */
-    private List<ChangeLog> fetchUpdatedChangeLogs(TrackedResourceSet updatedTrs) {
+    private class EventHandlerCycle implements ProviderSync.Cycle {
+        @Override
+        public void indexBasePage(List<URI> baseMembers) {
+            fetchAheadInChunks(baseMembers, baseMemberUri -> {
+                log.debug("Fetching TRS base from {}", baseMemberUri);
+                return trsClient.fetchTRSRemoteResource(baseMemberUri);
+            }, BaseMember::new, chunk -> {
+                // actually it is possible to generate a Creation event per resource in base!
+                log.debug("Processing {} base member creation events", chunk.size());
+                handler.handleBaseMembers(chunk);
+                sync.baseMembersHandedOver(chunk.get(chunk.size() - 1).getUri());
+            });
+        }
 
-        ChangeLog firstChangeLog = updatedTrs.getChangeLog();
-        List<ChangeLog> changeLogs = new ArrayList<>();
-        boolean foundSyncEvent;
+        @Override
+        public void processChangeEvents(List<ChangeEvent> changeEvents) {
+            fetchAheadInChunks(changeEvents, TrsProviderHandler.this::fetchChangedResource,
+                    ChangeEventMessageTR::new, chunk -> {
+                        log.info("processing {} change events", chunk.size());
+                        handler.handleChangeEvents(chunk);
+                        sync.changeEventsHandedOver(chunk.get(chunk.size() - 1).getChangeEvent());
+                    });
+        }
 
-        foundSyncEvent = fetchRemoteChangeLogs(firstChangeLog, changeLogs);
-        if (!foundSyncEvent) {
-            lastProcessedChangeEventUri = null;
-            throw new ServerRollBackException(
-                    "The sync event can not be found. The sever provinding the trs at: " +
-                            trsUriBase + " seems to " + "have been rollecd back to a previous " +
-                            "state");
+        @Override
+        public void finishCycle() {
+            handler.finishCycle();
         }
-        return changeLogs;
-    }
 
-    /**
-     * Request the pages of the change log from the TRS provider sequentially
-     * through the traversal of the paging information until the last processed
-     * change event is found. Add the fetched change logs to the changeLogs
-     * argument. In case the last processed change event is found true is
-     * returned otherwise false is returned
-     *
-     * @param currentChangeLog the first change log from which the next page will be
-     *                         retrieved to retrieve the other pages of the change log
-     * @param changeLogs       the list of change logs which will be filled with the pages of
-     *                         the change log
-     *
-     * @return true if the last processed change event is found, false otherwise
-     */
-    private boolean fetchRemoteChangeLogs(ChangeLog currentChangeLog, List<ChangeLog> changeLogs) {
-        boolean foundChangeEvent = false;
-        URI previousChangeLog;
-        do {
-            if (currentChangeLog != null) {
-                changeLogs.add(currentChangeLog);
-                if (ProviderUtil.changeLogContainsEvent(lastProcessedChangeEventUri,
-                        currentChangeLog)) {
-                    foundChangeEvent = true;
-                    break;
-                }
-                previousChangeLog = currentChangeLog.getPrevious();
-                currentChangeLog = trsClient.fetchRemoteChangeLog(previousChangeLog);
-            } else {
-                break;
-            }
-        } while (!RDF.nil.getURI().equals(previousChangeLog.toString()));
-        return foundChangeEvent;
+        @Override
+        public void rebase() {
+            handler.rebase();
+        }
     }
-
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.trs.client.util.ModelHasher;
+import org.eclipse.lyo.trs.client.util.SparqlUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the last representation written to each named graph so that a modification can be
+ * sent as a {@code DELETE DATA} / {@code INSERT DATA} of the changed triples instead of dropping
+ * and recreating the whole graph.
+ * <p>
+ * Only the triples without blank nodes are kept as such. The triples with blank nodes can not be
+ * addressed by {@code DELETE DATA}, so they are reduced to a {@link ModelHasher} fingerprint; if
+ * that part of the representation changed, or the graph is not in the cache, the full
+ * drop-and-insert update is used. The cache must only learn about the updates
+ * that reach the store: a sink that skips a failed update has to {@link #invalidateAll()}.
+ *
+ * @since 4.0.0
+ */
+public class GraphDeltaCache {
+    private final static Logger log = LoggerFactory.getLogger(GraphDeltaCache.class);
+
+    /**
+     * Default max number of triples kept over all the cached graphs
+     */
+    public static final long DEFAULT_MAX_TRIPLES = 1_000_000;
+
+    private final Cache<URI, Snapshot> snapshots;
+
+    public GraphDeltaCache() {
+        this(DEFAULT_MAX_TRIPLES);
+    }
+
+    /**
+     * @param maxTriples max number of triples kept over all the cached graphs; the least recently
+     *                   used graphs are evicted first and fall back to full updates
+     */
+    public GraphDeltaCache(final long maxTriples) {
+        this.snapshots = CacheBuilder.newBuilder()
+                .maximumWeight(maxTriples)
+                .weigher((URI graph, Snapshot snapshot) -> snapshot.groundTriples.size() + 1)
+                .build();
+    }
+
+    /**
+     * Remember the representation of a graph written in full, e.g. for a base member or a
+     * creation.
+     */
+    public void record(final URI graph, final Model model) {
+        if (model == null) {
+            snapshots.invalidate(graph);
+        } else {
+            snapshots.put(graph, Snapshot.of(model));
+        }
+    }
+
+    /**
+     * Return the update for a modification: the delta against the cached representation if
+     * possible, the full drop-and-insert update otherwise.
+     *
+     * @return the update or null if the representation did not change
+     */
+    public String getModificationEventQuery(final ChangeEvent changeEvent, final Model model) {
+        final URI graph = changeEvent.getChanged();
+        if (model == null) {
+            snapshots.invalidate(graph);
+            return SparqlUtil.getModificationEventQuery(changeEvent, model);
+        }
+        final Snapshot current = Snapshot.of(model);
+        final Snapshot previous = snapshots.getIfPresent(graph);
+        snapshots.put(graph, current);
+        if (previous == null || !previous.blankNodeFingerprint.equals(
+                current.blankNodeFingerprint)) {
+            log.trace("No usable previous representation of {}, replacing the graph", graph);
+            return SparqlUtil.getModificationEventQuery(changeEvent, model);
+        }
+
+        final List<Triple> removed = new ArrayList<>();
+        for (Triple triple : previous.groundTriples) {
+            if (!current.groundTriples.contains(triple)) {
+                removed.add(triple);
+            }
+        }
+        final List<Triple> added = new ArrayList<>();
+        for (Triple triple : current.groundTriples) {
+            if (!previous.groundTriples.contains(triple)) {
+                added.add(triple);
+            }
+        }
+        log.debug("Delta for {}: {} triples removed, {} added", graph, removed.size(),
+                added.size());
+        if (removed.isEmpty() && added.isEmpty()) {
+            return null;
+        }
+        final StringBuilder query = new StringBuilder();
+        if (!removed.isEmpty()) {
+            appendData(query, "DELETE DATA", graph, removed);
+        }
+        if (!added.isEmpty()) {
+            if (query.length() > 0) {
+                query.append(";\n");
+            }
+            appendData(query, "INSERT DATA", graph, added);
+        }
+        return query.toString();
+    }
+
+    public void invalidate(final URI graph) {
+        snapshots.invalidate(graph);
+    }
+
+    public void invalidateAll() {
+        snapshots.invalidateAll();
+    }
+
+    private static void appendData(final StringBuilder query, final String operation,
+            final URI graph, final List<Triple> triples) {
+        query.append(operation).append("\n{\n  GRAPH <").append(graph).append(">\n{\n");
+        for (Triple triple : triples) {
+            query.append(NodeFmtLib.str(triple)).append(" .\n");
+        }
+        query.append("}\n}");
+    }
+
+    private static class Snapshot {
+        private final Set<Triple> groundTriples;
+        private final HashCode blankNodeFingerprint;
+
+        private Snapshot(final Set<Triple> groundTriples, final HashCode blankNodeFingerprint) {
+            this.groundTriples = groundTriples;
+            this.blankNodeFingerprint = blankNodeFingerprint;
+        }
+
+        private static Snapshot of(final Model model) {
+            final Set<Triple> ground = new HashSet<>();
+            final List<Triple> withBlankNodes = new ArrayList<>();
+            final ExtendedIterator<Triple> it = model.getGraph().find();
+            try {
+                while (it.hasNext()) {
+                    final Triple triple = it.next();
+                    if (triple.getSubject().isBlank() || triple.getObject().isBlank()) {
+                        withBlankNodes.add(triple);
+                    } else {
+                        ground.add(triple);
+                    }
+                }
+            } finally {
+                it.close();
+            }
+            return new Snapshot(ground, ModelHasher.hash(withBlankNodes));
+        }
+    }
+}
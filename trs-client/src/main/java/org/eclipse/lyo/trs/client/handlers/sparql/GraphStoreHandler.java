@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.trs.client.handlers.IProviderEventHandler;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.SparqlConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one named graph per tracked resource using the SPARQL 1.1 Graph Store HTTP Protocol
+ * instead of SPARQL updates. Base members, creations and modifications {@code PUT} the graph,
+ * deletions {@code DELETE} it. The request body is written straight from the model into the
+ * (optionally gzip-compressed) connection, so no update string is ever built or parsed.
+ * <p>
+ * Each request is independent, so the handler may be called from many threads at once.
+ *
+ * @since 4.0.0
+ */
+public class GraphStoreHandler implements IProviderEventHandler {
+    private final static Logger log = LoggerFactory.getLogger(GraphStoreHandler.class);
+
+    private final URI graphStoreService;
+    private final HttpClient httpClient;
+    private final RDFFormat format;
+    private final boolean compress;
+    private final String authorization;
+
+    /**
+     * @param graphStoreService Graph Store Protocol endpoint, e.g. {@code
+     *                          http://localhost:3030/ds/data}
+     */
+    public GraphStoreHandler(final String graphStoreService) {
+        this(graphStoreService, null, null, RDFFormat.NTRIPLES_UTF8, true,
+                SparqlConnectionManager.getDefault());
+    }
+
+    /**
+     * @param graphStoreService Graph Store Protocol endpoint
+     * @param user              username, null if no authentication is needed
+     * @param pwd               password, null if no authentication is needed
+     * @param format            syntax of the request bodies; must be a streaming one that the
+     *                          store accepts, e.g. N-Triples or RDF Thrift
+     * @param compress          whether to gzip the request bodies; the store must accept
+     *                          {@code Content-Encoding: gzip}
+     * @param connectionManager source of the pooled HTTP connections
+     */
+    public GraphStoreHandler(final String graphStoreService, final String user, final String pwd,
+            final RDFFormat format, final boolean compress,
+            final SparqlConnectionManager connectionManager) {
+        this.graphStoreService = URI.create(graphStoreService);
+        this.httpClient = connectionManager.getHttpClient();
+        this.format = format;
+        this.compress = compress;
+        if (user != null && pwd != null && !user.isEmpty() && !pwd.isEmpty()) {
+            this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                    (user + ":" + pwd).getBytes(StandardCharsets.UTF_8));
+        } else {
+            this.authorization = null;
+        }
+    }
+
+    @Override
+    public void finishCycle() {
+
+    }
+
+    @Override
+    public void handleBaseMember(final BaseMember baseMember) {
+        putGraph(baseMember.getUri(), baseMember.getModel());
+    }
+
+    @Override
+    public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+        final ChangeEvent changeEvent = eventMessageTR.getChangeEvent();
+        final Model trsResourceModel = eventMessageTR.getTrackedResourceModel();
+        if (changeEvent instanceof Deletion) {
+            deleteGraph(changeEvent.getChanged());
+        } else if (trsResourceModel != null) {
+            putGraph(changeEvent.getChanged(), trsResourceModel);
+        }
+    }
+
+    @Override
+    public void rebase() {
+
+    }
+
+    private void putGraph(final URI graph, final Model model) {
+        final HttpPut put = new HttpPut(graphUri(graph));
+        final ModelEntity entity = new ModelEntity(model);
+        entity.setContentType(format.getLang().getContentType().getContentType());
+        if (compress) {
+            entity.setContentEncoding("gzip");
+        }
+        put.setEntity(entity);
+        execute(put, false);
+    }
+
+    private void deleteGraph(final URI graph) {
+        // a graph that is already gone is fine
+        execute(new HttpDelete(graphUri(graph)), true);
+    }
+
+    private void execute(final HttpUriRequest request, final boolean notFoundIsOk) {
+        if (authorization != null) {
+            request.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        log.debug("{} {}", request.getMethod(), request.getURI());
+        try {
+            final HttpResponse response = httpClient.execute(request);
+            final int status = response.getStatusLine().getStatusCode();
+            // consuming the entity returns the connection to the pool
+            EntityUtils.consume(response.getEntity());
+            if (status / 100 != 2 && !(notFoundIsOk && status == HttpStatus.SC_NOT_FOUND)) {
+                throw new IOException(
+                        request.getMethod() + " " + request.getURI() + " failed: " +
+                                response.getStatusLine());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private URI graphUri(final URI graph) {
+        try {
+            return new URIBuilder(graphStoreService).addParameter("graph", graph.toString())
+                    .build();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Request body that serialises the model while it is being sent, chunked. It is only buffered
+     * when it is read instead, e.g. to be logged.
+     */
+    private class ModelEntity extends AbstractHttpEntity {
+        private final Model model;
+
+        private ModelEntity(final Model model) {
+            this.model = model;
+            setChunked(true);
+        }
+
+        @Override
+        public void writeTo(final OutputStream outStream) throws IOException {
+            if (compress) {
+                final GZIPOutputStream gzip = new GZIPOutputStream(outStream, 8192);
+                RDFDataMgr.write(gzip, model, format);
+                gzip.finish();
+            } else {
+                RDFDataMgr.write(outStream, model, format);
+            }
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            writeTo(buffer);
+            return new ByteArrayInputStream(buffer.toByteArray());
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
@@ -1,48 +1,180 @@
 package org.eclipse.lyo.trs.client.handlers.sparql;
 
-import java.util.ArrayList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.http.HttpStatus;
+import org.apache.jena.atlas.web.HttpException;
 import org.eclipse.lyo.core.trs.ChangeEvent;
 import org.eclipse.lyo.core.trs.Deletion;
-import org.eclipse.lyo.trs.client.handlers.IProviderEventHandler;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.trs.client.handlers.IStagedProviderEventHandler;
 import org.eclipse.lyo.trs.client.model.BaseMember;
 import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.SparqlConnectionManager;
 import org.eclipse.lyo.trs.client.util.SparqlUtil;
-import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SparqlBatchingHandler implements IProviderEventHandler {
+/**
+ * Sends the SPARQL updates in batches. A batch is flushed as soon as it holds
+ * {@code maxBatchOperations} operations or {@code maxBatchChars} characters, when an operation is
+ * added more than {@code maxBatchDelayMillis} after the first one, and at the end of each cycle.
+ * The batches are sent one at a time in commit order on a background thread, so that the updates
+ * of a graph are never reordered; up to {@code maxQueuedBatches} batches wait to be sent before
+ * the producers are blocked. {@link #finishCycle()} waits for all of them. Operations may be
+ * committed from any number of threads concurrently.
+ * <p>
+ * If the endpoint rejects a batch with 400 Bad Request, the batch is split in half and each half
+ * is resent until the failing operations are isolated. Those are logged and skipped so the rest of
+ * the cycle is not lost. This assumes that the endpoint applies a rejected request atomically,
+ * i.e. not at all. Any other failure, e.g. an unreachable endpoint or a server error, drops the
+ * rest of the cycle and is rethrown from {@link #finishCycle()}; the {@link GraphDeltaCache} is
+ * then emptied, so that the replayed modifications replace their graphs.
+ */
+public class SparqlBatchingHandler implements IStagedProviderEventHandler<String> {
     private final static Logger log = LoggerFactory.getLogger(
             SparqlBatchingHandler.class);
 
-    private final List<String> queries = new ArrayList<>();
-    private final String sparqlUpdateService;
-    private final String sparql_baseAuth_userName;
-    private final String sparql_baseAuth_pwd;
+    public static final int DEFAULT_MAX_BATCH_OPERATIONS = 1000;
+    public static final long DEFAULT_MAX_BATCH_CHARS = 8L * 1024 * 1024;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 5000;
+    public static final int DEFAULT_MAX_QUEUED_BATCHES = 4;
+
+    private final int maxQueuedBatches;
+    private final Consumer<String> updateSender;
+    /**
+     * Single thread, so that the batches are sent in order
+     */
+    private final ExecutorService flushExecutor;
+    /**
+     * One permit per batch that may be queued or in flight; {@link #finishCycle()} takes all of
+     * them to wait for the outstanding flushes.
+     */
+    private final Semaphore flushPermits;
+    /**
+     * First failure to send a batch since the last {@link #finishCycle()}; the batches after it
+     * are dropped
+     */
+    private volatile RuntimeException flushFailure;
+    private final AtomicLong failedOperations = new AtomicLong();
+    /**
+     * Producers may call {@link #commit(String)} from many threads at once.
+     */
+    private final UpdateBatchBuffer queries;
+    private volatile GraphDeltaCache deltaCache;
 
     public SparqlBatchingHandler(final String sparqlUpdateService,
             final String sparql_baseAuth_userName, final String sparql_baseAuth_pwd) {
-        this.sparqlUpdateService = sparqlUpdateService;
-        this.sparql_baseAuth_userName = sparql_baseAuth_userName;
-        this.sparql_baseAuth_pwd = sparql_baseAuth_pwd;
+        this(sparqlUpdateService, sparql_baseAuth_userName, sparql_baseAuth_pwd,
+                DEFAULT_MAX_BATCH_OPERATIONS, DEFAULT_MAX_BATCH_CHARS,
+                DEFAULT_MAX_BATCH_DELAY_MILLIS, DEFAULT_MAX_QUEUED_BATCHES);
+    }
+
+    /**
+     * @param maxBatchOperations  max number of update operations in one request
+     * @param maxBatchChars       max size of one request in characters
+     * @param maxBatchDelayMillis max time an operation waits in an open batch, checked when the
+     *                            next operation is added
+     * @param maxQueuedBatches    max number of batches queued or in flight
+     */
+    public SparqlBatchingHandler(final String sparqlUpdateService,
+            final String sparql_baseAuth_userName, final String sparql_baseAuth_pwd,
+            final int maxBatchOperations, final long maxBatchChars,
+            final long maxBatchDelayMillis, final int maxQueuedBatches) {
+        this(sparqlUpdateService, sparql_baseAuth_userName, sparql_baseAuth_pwd,
+                maxBatchOperations, maxBatchChars, maxBatchDelayMillis, maxQueuedBatches,
+                SparqlConnectionManager.getDefault());
+    }
+
+    /**
+     * @param connectionManager pool of the connections to the update endpoint, may be shared
+     *                          with other handlers
+     */
+    public SparqlBatchingHandler(final String sparqlUpdateService,
+            final String sparql_baseAuth_userName, final String sparql_baseAuth_pwd,
+            final int maxBatchOperations, final long maxBatchChars,
+            final long maxBatchDelayMillis, final int maxQueuedBatches,
+            final SparqlConnectionManager connectionManager) {
+        this(query -> connectionManager.post(sparqlUpdateService, sparql_baseAuth_userName,
+                sparql_baseAuth_pwd, query), maxBatchOperations, maxBatchChars,
+                maxBatchDelayMillis, maxQueuedBatches);
+    }
+
+    /**
+     * @param updateSender sends an update request; throws an {@link HttpException} with the
+     *                     status code if the endpoint fails it
+     */
+    SparqlBatchingHandler(final Consumer<String> updateSender, final int maxBatchOperations,
+            final long maxBatchChars, final long maxBatchDelayMillis,
+            final int maxQueuedBatches) {
+        this.updateSender = updateSender;
+        this.queries = new UpdateBatchBuffer(maxBatchOperations, maxBatchChars,
+                maxBatchDelayMillis);
+        this.maxQueuedBatches = maxQueuedBatches;
+        this.flushPermits = new Semaphore(maxQueuedBatches);
+        this.flushExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("sparql-flush-%d").setDaemon(true)
+                        .build());
+        ((ThreadPoolExecutor) flushExecutor).allowCoreThreadTimeOut(true);
     }
 
     @Override
     public void finishCycle() {
-        log.debug("number of processed queries: " + queries.size());
-        String finalQueryString = buildYugeQuery(queries);
-        log.debug("sending Update SPARQL Query to server");
-
-        SparqlUtil.processQuery_sesame(finalQueryString, sparqlUpdateService,
-                sparql_baseAuth_userName, sparql_baseAuth_pwd);
-        log.debug("Update SPARQL Queries successful!");
+        List<String> batch;
+        while ((batch = queries.takeBatch()) != null) {
+            flush(batch);
+        }
 
-        queries.clear();
+        flushPermits.acquireUninterruptibly(maxQueuedBatches);
+        flushPermits.release(maxQueuedBatches);
+        final RuntimeException failure = flushFailure;
+        if (failure != null) {
+            flushFailure = null;
+            // the representations recorded for the dropped batches never reached the store
+            final GraphDeltaCache deltaCache = this.deltaCache;
+            if (deltaCache != null) {
+                deltaCache.invalidateAll();
+            }
+            throw new IllegalStateException("Failed to send the SPARQL updates of the cycle",
+                    failure);
+        }
+        log.debug("All SPARQL update batches of the cycle were sent");
     }
 
     @Override
     public void handleBaseMember(final BaseMember baseMember) {
+        commit(prepareBaseMember(baseMember));
+    }
+
+    @Override
+    public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+        commit(prepareChangeEvent(eventMessageTR));
+    }
+
+    /**
+     * Send modifications as triple-level deltas against the last representation written by this
+     * handler, see {@link GraphDeltaCache}.
+     *
+     * @param deltaCache cache of the written representations, null to always replace the graph
+     */
+    public void setDeltaCache(final GraphDeltaCache deltaCache) {
+        this.deltaCache = deltaCache;
+    }
+
+    @Override
+    public String prepareBaseMember(final BaseMember baseMember) {
+        final GraphDeltaCache deltaCache = this.deltaCache;
+        if (deltaCache != null) {
+            deltaCache.record(baseMember.getUri(), baseMember.getModel());
+        }
         StringBuilder query = new StringBuilder();
         String graphCreationQuery = SparqlUtil.createGraphQuery(baseMember.getUri());
         String addTriplesToGraphQuery = SparqlUtil.addTriplesToGraphQuery(baseMember.getUri(),
@@ -50,46 +182,120 @@ public class SparqlBatchingHandler implements IProviderEventHandler {
         query.append(graphCreationQuery);
         query.append("; \n");
         query.append(addTriplesToGraphQuery);
-        queries.add(query.toString());
+        return query.toString();
     }
 
     @Override
-    public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+    public String prepareChangeEvent(final ChangeEventMessageTR eventMessageTR) {
         final ChangeEvent event = eventMessageTR.getChangeEvent();
         log.debug(
                 "creating query for resource " + event.getChanged().toString() + " change event ");
+        final GraphDeltaCache deltaCache = this.deltaCache;
         if (event instanceof Deletion) {
-            String query = SparqlUtil.getChangeEventQuery(event, null);
-            queries.add(query);
+            if (deltaCache != null) {
+                deltaCache.invalidate(event.getChanged());
+            }
+            return SparqlUtil.getChangeEventQuery(event, null);
+        } else if (deltaCache != null) {
+            if (event instanceof Modification) {
+                return deltaCache.getModificationEventQuery(event,
+                        eventMessageTR.getTrackedResourceModel());
+            }
+            deltaCache.record(event.getChanged(), eventMessageTR.getTrackedResourceModel());
+            return SparqlUtil.getChangeEventQuery(event,
+                    eventMessageTR.getTrackedResourceModel());
         } else {
-            String query = SparqlUtil.getChangeEventQuery(event,
+            return SparqlUtil.getChangeEventQuery(event,
                     eventMessageTR.getTrackedResourceModel());
-            queries.add(query);
+        }
+    }
+
+    @Override
+    public void commit(final String query) {
+        if (query == null) {
+            return;
+        }
+        if (queries.add(query)) {
+            List<String> batch;
+            while ((batch = queries.takeFullBatch()) != null) {
+                flush(batch);
+            }
         }
     }
 
     @Override
     public void rebase() {
         log.warn("Rebase");
+        final GraphDeltaCache deltaCache = this.deltaCache;
+        if (deltaCache != null) {
+            deltaCache.invalidateAll();
+        }
     }
 
-    @NotNull
-    private String buildYugeQuery(final List<String> queries) {
-        StringBuilder queriesStringBuilder = new StringBuilder();
+    /**
+     * @return number of update operations that were rejected by the endpoint and skipped
+     */
+    public long getFailedOperations() {
+        return failedOperations.get();
+    }
 
-        for (String query : queries) {
-            queriesStringBuilder.append(query);
-            queriesStringBuilder.append("; \n");
+    /**
+     * Send the batch on the flush executor, blocking while {@code maxQueuedBatches} batches are
+     * already queued or in flight.
+     */
+    private void flush(final List<String> batch) {
+        flushPermits.acquireUninterruptibly();
+        try {
+            flushExecutor.execute(() -> {
+                try {
+                    send(batch);
+                } finally {
+                    flushPermits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            flushPermits.release();
+            throw e;
         }
+    }
 
-//          TODO  simply join instead of append - or check for the last element
-        queriesStringBuilder.replace(queriesStringBuilder.lastIndexOf("; \n"),
-                queriesStringBuilder.lastIndexOf("; \n") + 1, "");
+    private void send(final List<String> batch) {
+        if (flushFailure != null) {
+            log.debug("Dropping a batch of {} operations after a failed one", batch.size());
+            return;
+        }
+        try {
+            sendSplitting(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to send a SPARQL update batch of {} operations", batch.size(), e);
+            flushFailure = e;
+        }
+    }
 
-        // TODO Andrew@2018-02-28: this is a YUGE query that can crash everything
-        // I think individual queries are better executed in the handlers
-        String finalQueryString = queriesStringBuilder.toString();
-        log.debug(finalQueryString);
-        return finalQueryString;
+    private void sendSplitting(final List<String> batch) {
+        log.debug("sending Update SPARQL Query with {} operations to server", batch.size());
+        try {
+            updateSender.accept(String.join("; \n", batch));
+            log.debug("Update SPARQL Queries successful!");
+        } catch (HttpException e) {
+            if (e.getResponseCode() != HttpStatus.SC_BAD_REQUEST) {
+                // not a rejection of the operations: the endpoint is unreachable or failing
+                throw e;
+            }
+            if (batch.size() == 1) {
+                failedOperations.incrementAndGet();
+                // the skipped operation may have been a delta base
+                final GraphDeltaCache deltaCache = this.deltaCache;
+                if (deltaCache != null) {
+                    deltaCache.invalidateAll();
+                }
+                log.error("SPARQL update operation rejected, skipping it:\n{}", batch.get(0), e);
+                return;
+            }
+            log.warn("SPARQL update batch of {} operations failed; splitting it", batch.size());
+            final int half = batch.size() / 2;
+            sendSplitting(batch.subList(0, half));
+            sendSplitting(batch.subList(half, batch.size()));
+        }
     }
 }
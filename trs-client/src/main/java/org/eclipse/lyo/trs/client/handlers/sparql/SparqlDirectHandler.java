@@ -18,7 +18,8 @@ import org.eclipse.lyo.core.trs.Deletion;
 import org.eclipse.lyo.trs.client.handlers.IProviderEventHandler;
 import org.eclipse.lyo.trs.client.model.BaseMember;
 import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
-import org.eclipse.lyo.trs.client.util.SparqlUtil;
+import org.eclipse.lyo.trs.client.util.SparqlConnectionManager;
+import org.eclipse.lyo.trs.client.util.UpdateRequestBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,9 +27,22 @@ public class SparqlDirectHandler implements IProviderEventHandler {
 
     private final static Logger log = LoggerFactory.getLogger(SparqlDirectHandler.class);
     private final String sparqlUpdateService;
+    private final SparqlConnectionManager connectionManager;
 
     public SparqlDirectHandler(
-            final String sparqlUpdateService) {this.sparqlUpdateService = sparqlUpdateService;}
+            final String sparqlUpdateService) {
+        this(sparqlUpdateService, SparqlConnectionManager.getDefault());
+    }
+
+    /**
+     * @param connectionManager pool of the connections to the update endpoint, may be shared
+     *                          with other handlers
+     */
+    public SparqlDirectHandler(final String sparqlUpdateService,
+            final SparqlConnectionManager connectionManager) {
+        this.sparqlUpdateService = sparqlUpdateService;
+        this.connectionManager = connectionManager;
+    }
 
     @Override
     public void finishCycle() {
@@ -37,9 +51,9 @@ public class SparqlDirectHandler implements IProviderEventHandler {
 
     @Override
     public void handleBaseMember(final BaseMember baseMember) {
-        SparqlUtil.createGraph(baseMember.getUri().toString(), sparqlUpdateService);
-        SparqlUtil.addTriplesToNamedGraph(baseMember.getModel(), baseMember.getUri().toString(),
-                sparqlUpdateService);
+        final String graph = baseMember.getUri().toString();
+        connectionManager.update(sparqlUpdateService, new UpdateRequestBuilder().createGraph(graph)
+                .insertData(graph, baseMember.getModel()).build());
     }
 
     @Override
@@ -47,10 +61,10 @@ public class SparqlDirectHandler implements IProviderEventHandler {
         final ChangeEvent changeEvent = eventMessageTR.getChangeEvent();
         final Model trsResourceModel = eventMessageTR.getTrackedResourceModel();
         if (changeEvent instanceof Deletion) {
-            SparqlUtil.processChangeEvent(changeEvent, null, sparqlUpdateService);
+            processChangeEvent(changeEvent, null);
         } else {
             if (trsResourceModel != null) {
-                SparqlUtil.processChangeEvent(changeEvent, trsResourceModel, sparqlUpdateService);
+                processChangeEvent(changeEvent, trsResourceModel);
             }
         }
 
@@ -60,4 +74,9 @@ public class SparqlDirectHandler implements IProviderEventHandler {
     public void rebase() {
 
     }
+
+    private void processChangeEvent(final ChangeEvent changeEvent, final Model model) {
+        connectionManager.update(sparqlUpdateService,
+                new UpdateRequestBuilder().changeEvent(changeEvent, model).build());
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-producer, single-consumer buffer of SPARQL update operations. Producers never block each
+ * other: {@link #add(String)} is a lock-free enqueue plus two counter updates. A batch is taken by
+ * whichever producer sees the buffer full first; the others carry on adding.
+ * <p>
+ * The counters are updated after the enqueue, so they may briefly lag behind the queue. The
+ * limits are therefore approximate; no operation is ever lost or taken twice.
+ *
+ * @since 4.0.0
+ */
+class UpdateBatchBuffer {
+    private final int maxOperations;
+    private final long maxChars;
+    private final long maxDelayMillis;
+
+    private final ConcurrentLinkedQueue<String> operations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingOperations = new AtomicInteger();
+    private final AtomicLong pendingChars = new AtomicLong();
+    private final AtomicLong batchStartedMillis = new AtomicLong();
+    /**
+     * Held by the single consumer while it takes a batch from the queue.
+     */
+    private final AtomicBoolean taking = new AtomicBoolean();
+
+    UpdateBatchBuffer(final int maxOperations, final long maxChars, final long maxDelayMillis) {
+        this.maxOperations = maxOperations;
+        this.maxChars = maxChars;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @return true if a full batch is waiting, see {@link #takeFullBatch()}
+     */
+    boolean add(final String operation) {
+        operations.offer(operation);
+        pendingChars.addAndGet(operation.length());
+        if (pendingOperations.incrementAndGet() == 1) {
+            batchStartedMillis.set(System.currentTimeMillis());
+        }
+        return isFull();
+    }
+
+    /**
+     * Take a batch if the buffer is full and no other thread is taking one.
+     *
+     * @return the batch or null
+     */
+    List<String> takeFullBatch() {
+        if (!isFull() || !taking.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return take();
+        } finally {
+            taking.set(false);
+        }
+    }
+
+    /**
+     * Take a batch regardless of the limits, waiting for a concurrent consumer to finish first.
+     * Meant for the end of a cycle, when the producers are done.
+     *
+     * @return the batch or null if the buffer is empty
+     */
+    List<String> takeBatch() {
+        while (!taking.compareAndSet(false, true)) {
+            Thread.yield();
+        }
+        try {
+            final List<String> batch = take();
+            return batch.isEmpty() ? null : batch;
+        } finally {
+            taking.set(false);
+        }
+    }
+
+    private boolean isFull() {
+        final int ops = pendingOperations.get();
+        return ops >= maxOperations || pendingChars.get() >= maxChars ||
+                ops > 0 && System.currentTimeMillis() - batchStartedMillis.get() >= maxDelayMillis;
+    }
+
+    private List<String> take() {
+        final List<String> batch = new ArrayList<>();
+        long chars = 0;
+        String operation;
+        while (batch.size() < maxOperations && chars < maxChars &&
+                (operation = operations.poll()) != null) {
+            batch.add(operation);
+            chars += operation.length();
+        }
+        pendingChars.addAndGet(-chars);
+        if (pendingOperations.addAndGet(-batch.size()) > 0) {
+            batchStartedMillis.set(System.currentTimeMillis());
+        }
+        return batch;
+    }
+}
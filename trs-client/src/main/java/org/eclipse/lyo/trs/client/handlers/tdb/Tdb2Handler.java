@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.tdb;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.jena.tdb2.loader.base.LoaderOps;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.trs.client.handlers.IProviderEventHandler;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a local replica in an embedded TDB2 dataset, one named graph per tracked resource. The
+ * events are applied as quad operations, without SPARQL, in write transactions of up to
+ * {@code maxBatchOperations} events; the rest of a cycle is committed by {@link #finishCycle()}.
+ * <p>
+ * When the base is indexed into an empty dataset, the base members are written with the TDB2 bulk
+ * loader instead, over as many cycles as the indexing takes, e.g. one per base page. The change
+ * events always replace their graphs and end the bulk loading. A failed cycle, or an indexing
+ * resumed on a non-empty dataset, e.g. after a restart, replaces the graphs too.
+ * <p>
+ * Each batch runs within a single call, so the events may come from any thread; the calls are
+ * serialised.
+ *
+ * @since 4.0.0
+ */
+public class Tdb2Handler implements IProviderEventHandler {
+    private final static Logger log = LoggerFactory.getLogger(Tdb2Handler.class);
+
+    public static final int DEFAULT_MAX_BATCH_OPERATIONS = 1000;
+
+    private final Dataset dataset;
+    private final DatasetGraph datasetGraph;
+    private final int maxBatchOperations;
+    private final List<GraphWrite> pending = new ArrayList<>();
+    /**
+     * Whether the base members are bulk loaded; null until the first base member is handled
+     * after a rebase or on a new handler, then decided by whether the dataset is empty
+     */
+    private Boolean bulkLoading;
+    private long bulkLoadedGraphs;
+
+    /**
+     * @param directory TDB2 database directory, created if missing
+     */
+    public Tdb2Handler(final String directory) {
+        this(TDB2Factory.connectDataset(directory), DEFAULT_MAX_BATCH_OPERATIONS);
+    }
+
+    /**
+     * @param dataset            TDB2 dataset, kept open by the caller
+     * @param maxBatchOperations max number of events applied in one write transaction
+     */
+    public Tdb2Handler(final Dataset dataset, final int maxBatchOperations) {
+        this.dataset = dataset;
+        this.datasetGraph = dataset.asDatasetGraph();
+        this.maxBatchOperations = maxBatchOperations;
+    }
+
+    @Override
+    public synchronized void finishCycle() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // the cycle is replayed over the graphs that were already written
+            pending.clear();
+            bulkLoading = false;
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void handleBaseMember(final BaseMember baseMember) {
+        if (bulkLoading == null) {
+            bulkLoading = Txn.calculateRead(dataset, datasetGraph::isEmpty);
+            log.debug("Indexing the base into {} dataset", bulkLoading ? "an empty"
+                    : "a non-empty");
+        }
+        add(new GraphWrite(baseMember.getUri(), baseMember.getModel(), bulkLoading));
+    }
+
+    @Override
+    public synchronized void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+        // the base is indexed by now
+        bulkLoading = false;
+        final ChangeEvent event = eventMessageTR.getChangeEvent();
+        if (event instanceof Deletion) {
+            add(new GraphWrite(event.getChanged(), null, false));
+        } else if (eventMessageTR.getTrackedResourceModel() != null) {
+            add(new GraphWrite(event.getChanged(), eventMessageTR.getTrackedResourceModel(),
+                    false));
+        }
+    }
+
+    /**
+     * @return number of graphs written with the bulk loader so far
+     */
+    public synchronized long getBulkLoadedGraphs() {
+        return bulkLoadedGraphs;
+    }
+
+    @Override
+    public synchronized void rebase() {
+        log.warn("Rebase, dropping {} pending writes", pending.size());
+        pending.clear();
+        bulkLoading = null;
+    }
+
+    private void add(final GraphWrite write) {
+        pending.add(write);
+        if (pending.size() >= maxBatchOperations) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final List<GraphWrite> bulk = new ArrayList<>();
+        final List<GraphWrite> removals = new ArrayList<>();
+        for (GraphWrite write : pending) {
+            (write.bulk ? bulk : removals).add(write);
+        }
+        if (!bulk.isEmpty()) {
+            // the dataset was empty when the indexing started and the members of a base are
+            // distinct, so nothing is replaced and the graphs can be appended by the bulk loader
+            final DataLoader loader = LoaderFactory.createLoader(datasetGraph,
+                    LoaderOps.nullOutput());
+            loader.startBulk();
+            try {
+                final StreamRDF stream = loader.stream();
+                for (GraphWrite write : bulk) {
+                    write.model.getGraph().find().forEachRemaining(
+                            t -> stream.quad(Quad.create(write.graph, t)));
+                }
+                loader.finishBulk();
+            } catch (RuntimeException e) {
+                loader.finishException(e);
+                throw e;
+            }
+            bulkLoadedGraphs += bulk.size();
+        }
+        if (!removals.isEmpty()) {
+            Txn.executeWrite(dataset, () -> {
+                for (GraphWrite write : removals) {
+                    datasetGraph.deleteAny(write.graph, Node.ANY, Node.ANY, Node.ANY);
+                    if (write.model != null) {
+                        write.model.getGraph().find().forEachRemaining(
+                                (Triple t) -> datasetGraph.add(write.graph, t.getSubject(),
+                                        t.getPredicate(), t.getObject()));
+                    }
+                }
+            });
+        }
+        log.debug("Applied {} graph writes", pending.size());
+        pending.clear();
+    }
+
+    /**
+     * Replacement of a named graph; a null model removes it. A bulk write appends to a graph
+     * known not to exist.
+     */
+    private static class GraphWrite {
+        private final Node graph;
+        private final Model model;
+        private final boolean bulk;
+
+        private GraphWrite(final URI graph, final Model model, final boolean bulk) {
+            this.graph = NodeFactory.createURI(graph.toString());
+            this.model = model;
+            this.bulk = bulk;
+        }
+    }
+}
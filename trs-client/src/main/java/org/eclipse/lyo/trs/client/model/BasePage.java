@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.model;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * A single page of the TRS base, reduced to what the consumer needs to index it: the member URIs,
+ * the cutoff event and the link to the next page.
+ */
+public class BasePage {
+    private final URI uri;
+    private final URI cutoffEvent;
+    private final List<URI> members;
+    private final URI nextPage;
+
+    public BasePage(final URI uri, final URI cutoffEvent, final List<URI> members,
+            final URI nextPage) {
+        this.uri = uri;
+        this.cutoffEvent = cutoffEvent;
+        this.members = members;
+        this.nextPage = nextPage;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public URI getCutoffEvent() {
+        return cutoffEvent;
+    }
+
+    public List<URI> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return the URI of the next page or {@code null} if this is the last page
+     */
+    public URI getNextPage() {
+        return nextPage;
+    }
+}
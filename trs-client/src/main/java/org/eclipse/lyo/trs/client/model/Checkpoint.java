@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.model;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Position of the consumer in the change log of a provider: the last change event that was
+ * processed and its trs:order, if known. While the base is being indexed, the change event is the
+ * cutoff event of the base and the checkpoint also records how far the indexing got.
+ *
+ * @since 4.0.0
+ */
+public class Checkpoint {
+    private final URI changeEvent;
+    private final Integer order;
+    private final URI basePage;
+    private final int baseMembers;
+
+    public Checkpoint(final URI changeEvent, final Integer order) {
+        this(changeEvent, order, null, 0);
+    }
+
+    /**
+     * @param basePage    page of the base being indexed, null if the base is not being indexed
+     * @param baseMembers number of members of that page already handled, in page order
+     */
+    public Checkpoint(final URI changeEvent, final Integer order, final URI basePage,
+            final int baseMembers) {
+        this.changeEvent = changeEvent;
+        this.order = order;
+        this.basePage = basePage;
+        this.baseMembers = basePage != null ? baseMembers : 0;
+    }
+
+    public URI getChangeEvent() {
+        return changeEvent;
+    }
+
+    /**
+     * @return trs:order of the change event, null if not known yet
+     */
+    public Integer getOrder() {
+        return order;
+    }
+
+    /**
+     * @return page of the base being indexed, null if the base is not being indexed
+     */
+    public URI getBasePage() {
+        return basePage;
+    }
+
+    /**
+     * @return number of members of the {@link #getBasePage() base page} already handled, in page
+     * order
+     */
+    public int getBaseMembers() {
+        return baseMembers;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final Checkpoint that = (Checkpoint) o;
+        return baseMembers == that.baseMembers && changeEvent.equals(that.changeEvent)
+                && Objects.equals(order, that.order) && Objects.equals(basePage, that.basePage);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(changeEvent, order, basePage, baseMembers);
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{" + "changeEvent=" + changeEvent + ", order=" + order + ", basePage="
+                + basePage + ", baseMembers=" + baseMembers + '}';
+    }
+}
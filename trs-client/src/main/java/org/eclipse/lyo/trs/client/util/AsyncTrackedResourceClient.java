@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.oslc4j.core.exception.LyoModelException;
+import org.eclipse.lyo.oslc4j.core.model.OslcMediaType;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.exceptions.TrsEndpointConfigException;
+import org.eclipse.lyo.trs.client.exceptions.TrsEndpointErrorException;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Issues the requests on the non-blocking I/O reactor of an Apache {@link
+ * CloseableHttpAsyncClient}, so that thousands of fetches can be outstanding on a handful of I/O
+ * threads. The number of requests in flight is limited by the connection pool of the client, see
+ * {@link org.apache.http.impl.nio.client.HttpAsyncClientBuilder#setMaxConnTotal(int)} and {@link
+ * org.apache.http.impl.nio.client.HttpAsyncClientBuilder#setMaxConnPerRoute(int)}.
+ * <p>
+ * Response bodies are parsed on the {@code parseExecutor} so that the I/O threads are never
+ * blocked on RDF parsing. Unlike {@link TrackedResourceClient}, no conditional requests are made.
+ *
+ * @since 4.0.0
+ */
+public class AsyncTrackedResourceClient implements IAsyncTrackedResourceClient, Closeable {
+    private final static Logger log = LoggerFactory.getLogger(AsyncTrackedResourceClient.class);
+
+    private static final String ACCEPT = OslcMediaType.TEXT_TURTLE + ", " +
+            OslcMediaType.APPLICATION_RDF_XML + ";q=0.9";
+    private static final String OSLC_CORE_VERSION = "OSLC-Core-Version";
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final Executor parseExecutor;
+
+    public AsyncTrackedResourceClient(final CloseableHttpAsyncClient httpClient) {
+        this(httpClient, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param httpClient    HTTP client, started here if it is not running yet
+     * @param parseExecutor executor on which the response bodies are parsed
+     */
+    public AsyncTrackedResourceClient(final CloseableHttpAsyncClient httpClient,
+            final Executor parseExecutor) {
+        this.httpClient = httpClient;
+        this.parseExecutor = parseExecutor;
+        if (!httpClient.isRunning()) {
+            httpClient.start();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Model> fetchTRSRemoteResource(final URI resource) {
+        return fetch(resource, response -> {
+            final Model model = ModelFactory.createDefaultModel();
+            read(resource, response, StreamRDFLib.graph(model.getGraph()));
+            return model;
+        });
+    }
+
+    @Override
+    public CompletableFuture<TrackedResourceSet> extractRemoteTrs(final URI trsUri) {
+        return fetch(trsUri,
+                response -> read(trsUri, response, new ChangeLogReader()).getTrackedResourceSet());
+    }
+
+    @Override
+    public CompletableFuture<ChangeLog> fetchRemoteChangeLog(final URI changeLogUrl) {
+        return fetch(changeLogUrl,
+                response -> read(changeLogUrl, response, new ChangeLogReader()).getChangeLog());
+    }
+
+    @Override
+    public CompletableFuture<Base> fetchRemoteBase(final URI baseUrl) {
+        return fetchTRSRemoteResource(baseUrl).thenApply(ClientUtil::extractBaseFromRdfModel);
+    }
+
+    @Override
+    public CompletableFuture<BasePage> fetchRemoteBasePage(final URI basePageUri) {
+        return fetch(basePageUri, response -> read(basePageUri, response,
+                new BasePageReader()).getBasePage(basePageUri));
+    }
+
+    /**
+     * Close the HTTP client; the fetches in flight fail.
+     */
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Send the request without blocking and parse the response on the parse executor. The
+     * response is always consumed after parsing.
+     */
+    private <T> CompletableFuture<T> fetch(final URI uri, final Function<HttpResponse, T> parser) {
+        final CompletableFuture<HttpResponse> responseFuture = new CompletableFuture<>();
+        final HttpGet request = new HttpGet(uri);
+        request.setHeader(HttpHeaders.ACCEPT, ACCEPT);
+        request.setHeader(OSLC_CORE_VERSION, "2.0");
+        log.trace("Requesting {}", uri);
+        httpClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(final HttpResponse response) {
+                responseFuture.complete(response);
+            }
+
+            @Override
+            public void failed(final Exception e) {
+                log.warn("Failed to fetch {}", uri);
+                responseFuture.completeExceptionally(new RepresentationRetrievalException(e));
+            }
+
+            @Override
+            public void cancelled() {
+                responseFuture.completeExceptionally(
+                        new RepresentationRetrievalException("Request cancelled: " + uri));
+            }
+        });
+        return responseFuture.thenApplyAsync(response -> {
+            try {
+                return parser.apply(response);
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        }, parseExecutor);
+    }
+
+    /**
+     * Parse the body of a TRS response into the sink, mapping the endpoint and parsing errors to
+     * {@link RepresentationRetrievalException} like
+     * {@link TrackedResourceClient#readResponse(URI, javax.ws.rs.core.Response, StreamRDF)}.
+     */
+    private static <R extends StreamRDF> R read(final URI uri, final HttpResponse response,
+            final R reader) {
+        final StatusLine status = response.getStatusLine();
+        if (status.getStatusCode() >= 500) {
+            log.warn("Failed to fetch {}", uri);
+            throw new RepresentationRetrievalException(
+                    new TrsEndpointErrorException("Error " + status.getReasonPhrase()));
+        } else if (status.getStatusCode() >= 400) {
+            log.error("Bad request for {}: {}", uri, status);
+            throw new RepresentationRetrievalException(
+                    new TrsEndpointConfigException("Error " + status.getReasonPhrase()));
+        }
+        final HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new RepresentationRetrievalException("Empty model was retrieved");
+        }
+        final ContentType contentType = ContentType.getLenient(entity);
+        try (InputStream is = entity.getContent()) {
+            RDFDataMgr.parse(reader, is, null, ClientUtil.langFromMediaType(
+                    contentType != null ? contentType.getMimeType() : null));
+        } catch (IOException | RiotException e) {
+            log.debug("Error reading Jena Model from the response");
+            throw new RepresentationRetrievalException(new LyoModelException(e));
+        }
+        return reader;
+    }
+}
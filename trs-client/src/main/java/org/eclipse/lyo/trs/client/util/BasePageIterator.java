@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the {@code ldp:nextPage} links of the base, fetching a page only when the iterator is
+ * advanced.
+ *
+ * @since 4.0.0
+ */
+class BasePageIterator implements Iterator<BasePage> {
+    private final static Logger log = LoggerFactory.getLogger(BasePageIterator.class);
+
+    private final Function<URI, BasePage> pageFetcher;
+    private URI nextPageUri;
+
+    BasePageIterator(final URI firstBasePageUri, final Function<URI, BasePage> pageFetcher) {
+        this.nextPageUri = firstBasePageUri;
+        this.pageFetcher = pageFetcher;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !ProviderUtil.isNilUri(nextPageUri);
+    }
+
+    @Override
+    public BasePage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final BasePage page = pageFetcher.apply(nextPageUri);
+        log.debug("Fetched base page {} with {} members", page.getUri(), page.getMembers().size());
+        nextPageUri = page.getNextPage();
+        return page;
+    }
+}
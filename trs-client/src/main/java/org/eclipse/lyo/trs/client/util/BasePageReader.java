@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.eclipse.lyo.core.trs.TRSConstants;
+import org.eclipse.lyo.trs.client.model.BasePage;
+
+/**
+ * Collects the member URIs of a single base page as the triples arrive from the parser, without
+ * unmarshalling {@link org.eclipse.lyo.core.trs.Base} and {@link org.eclipse.lyo.core.trs.Page}
+ * pojos. Both {@code rdfs:member} and {@code ldp:member} are accepted.
+ *
+ * @since 4.0.0
+ */
+public class BasePageReader extends StreamRDFBase {
+    private static final Node P_RDFS_MEMBER = NodeFactory.createURI(TRSConstants.RDFS_MEMBER);
+    private static final Node P_LDP_MEMBER = NodeFactory.createURI(
+            TRSConstants.LDP_NAMESPACE + "member");
+    private static final Node P_CUTOFF_EVENT = NodeFactory.createURI(
+            TRSConstants.TRS_CUTOFFEVENT);
+    private static final Node P_NEXT_PAGE = NodeFactory.createURI(TRSConstants.LDP_NEXT_PAGE);
+
+    private final List<URI> members = new ArrayList<>();
+    private URI cutoffEvent;
+    private URI nextPage;
+
+    @Override
+    public void triple(final Triple triple) {
+        final Node p = triple.getPredicate();
+        final Node o = triple.getObject();
+        if (!o.isURI()) {
+            return;
+        }
+        if (P_RDFS_MEMBER.equals(p) || P_LDP_MEMBER.equals(p)) {
+            members.add(URI.create(o.getURI()));
+        } else if (P_CUTOFF_EVENT.equals(p)) {
+            cutoffEvent = URI.create(o.getURI());
+        } else if (P_NEXT_PAGE.equals(p)) {
+            nextPage = URI.create(o.getURI());
+        }
+    }
+
+    @Override
+    public void quad(final Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    /**
+     * @param pageUri the URI the page was fetched from
+     *
+     * @return the page with the members received so far
+     */
+    public BasePage getBasePage(final URI pageUri) {
+        final URI next = ProviderUtil.isNilUri(nextPage) ? null : nextPage;
+        return new BasePage(pageUri, cutoffEvent, members, next);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Page;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adapts an {@link IAsyncTrackedResourceClient} to the blocking {@link ITrackedResourceClient}
+ * used by the provider handlers. Each call waits for its future; the exceptions the future
+ * completed with are rethrown as is.
+ *
+ * @since 4.0.0
+ */
+public class BlockingTrackedResourceClient implements ITrackedResourceClient {
+    private final IAsyncTrackedResourceClient asyncClient;
+
+    public BlockingTrackedResourceClient(final IAsyncTrackedResourceClient asyncClient) {
+        this.asyncClient = asyncClient;
+    }
+
+    /**
+     * @return the adapted client, e.g. for the fetch stage of the concurrent provider handlers
+     */
+    public IAsyncTrackedResourceClient getAsyncClient() {
+        return asyncClient;
+    }
+
+    @NotNull
+    @Override
+    public Model fetchTRSRemoteResource(final URI resource)
+            throws RepresentationRetrievalException {
+        return await(asyncClient.fetchTRSRemoteResource(resource));
+    }
+
+    /**
+     * @deprecated holds the whole base in memory; use {@link #fetchRemoteBasePages(URI)}
+     */
+    @Deprecated
+    @Override
+    public List<Base> updateBases(final TrackedResourceSet updatedTrs) {
+        final List<Base> bases = new ArrayList<>();
+        Base currentBase = fetchRemoteBase(updatedTrs.getBase());
+        bases.add(currentBase);
+        Page nextPage = currentBase.getNextPage();
+        while (nextPage != null && !ProviderUtil.isNilUri(nextPage.getNextPage())) {
+            currentBase = fetchRemoteBase(nextPage.getNextPage());
+            bases.add(currentBase);
+            nextPage = currentBase.getNextPage();
+        }
+        return bases;
+    }
+
+    @Override
+    public TrackedResourceSet extractRemoteTrs(final URI trsUri) {
+        return await(asyncClient.extractRemoteTrs(trsUri));
+    }
+
+    @Override
+    public ChangeLog fetchRemoteChangeLog(final URI changeLogURl) {
+        return await(asyncClient.fetchRemoteChangeLog(changeLogURl));
+    }
+
+    @Override
+    public Base fetchRemoteBase(final URI baseUrl) {
+        return await(asyncClient.fetchRemoteBase(baseUrl));
+    }
+
+    @Override
+    public BasePage fetchRemoteBasePage(final URI basePageUri) {
+        return await(asyncClient.fetchRemoteBasePage(basePageUri));
+    }
+
+    @Override
+    public Iterator<BasePage> fetchRemoteBasePages(final URI firstBasePageUri) {
+        return new BasePageIterator(firstBasePageUri, this::fetchRemoteBasePage);
+    }
+
+    private static <T> T await(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RepresentationRetrievalException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The change log pages fetched back to the sync point, newest first. The pages are kept in memory
+ * until they hold more than {@code threshold} change events; then they and all the pages that
+ * follow are written to an append-only spill file in a compact form (order, event type, event and
+ * changed resource URIs). A spilled change log is replayed oldest first in compressed windows of
+ * up to {@code threshold} events, so the memory used does not depend on how far behind the
+ * consumer is. Only the file offset of each page is kept in memory.
+ * <p>
+ * Not thread-safe. {@link #close()} deletes the spill file.
+ *
+ * @since 4.0.0
+ */
+public class ChangeLogBuffer implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(ChangeLogBuffer.class);
+
+    private static final byte CREATION = 0;
+    private static final byte MODIFICATION = 1;
+    private static final byte DELETION = 2;
+
+    private final Path spillDirectory;
+    private final int threshold;
+    private final List<ChangeLog> pages = new ArrayList<>();
+    private int bufferedEvents;
+    private long events;
+
+    private Path spillFile;
+    private CountingOutputStream spillCounter;
+    private DataOutputStream spill;
+    private long[] pageOffsets = new long[16];
+    private int spilledPages;
+
+    /**
+     * @param spillDirectory directory of the spill file, null for the default temporary directory
+     * @param threshold      max number of change events kept in memory
+     */
+    public ChangeLogBuffer(final Path spillDirectory, final int threshold) {
+        this.spillDirectory = spillDirectory;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * Add the next (older) page of the change log.
+     */
+    public void add(final ChangeLog changeLog) {
+        final List<ChangeEvent> changes = changeLog.getChange();
+        if (spill == null && bufferedEvents + changes.size() > threshold) {
+            startSpilling();
+        }
+        if (spill != null) {
+            write(changes);
+        } else {
+            pages.add(changeLog);
+            bufferedEvents += changes.size();
+        }
+        events += changes.size();
+    }
+
+    /**
+     * @return true if the pages were written to the spill file and must be replayed with
+     * {@link #replay(URI, int, Consumer)}
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * @return the pages, newest first, if they were not spilled
+     */
+    public List<ChangeLog> getPages() {
+        if (isSpilled()) {
+            throw new IllegalStateException("The change log was spilled to " + spillFile);
+        }
+        return pages;
+    }
+
+    /**
+     * @return number of change events added
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Read the spilled change events back oldest first and hand them over in windows of up to
+     * {@code threshold} events, each compressed with {@link ProviderUtil#compressChanges(List)}.
+     * The pages are expected not to overlap in trs:order, which is only sorted within a page.
+     *
+     * @param syncPointUri   the last processed change event; it and the older events are skipped
+     * @param syncPointOrder trs:order of the last processed change event; the events ordered
+     *                       alike are skipped up to the sync point, in the order of their page
+     * @param windowConsumer receives the compressed windows in change log order
+     */
+    public void replay(final URI syncPointUri, final int syncPointOrder,
+            final Consumer<List<ChangeEvent>> windowConsumer) {
+        if (!isSpilled()) {
+            throw new IllegalStateException("The change log was not spilled");
+        }
+        final Comparator<ChangeEvent> oldestFirst = Comparator.comparingInt(
+                ChangeEvent::getOrder);
+        List<ChangeEvent> window = new ArrayList<>();
+        boolean syncPointPassed = false;
+        try {
+            spill.flush();
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+                for (int i = spilledPages - 1; i >= 0; i--) {
+                    channel.position(pageOffsets[i]);
+                    final List<ChangeEvent> page = read(new DataInputStream(
+                            new BufferedInputStream(Channels.newInputStream(channel))));
+                    page.sort(oldestFirst);
+                    for (ChangeEvent changeEvent : page) {
+                        if (!syncPointPassed && changeEvent.getOrder() <= syncPointOrder) {
+                            syncPointPassed = changeEvent.getAbout().equals(syncPointUri);
+                            continue;
+                        }
+                        window.add(changeEvent);
+                        if (window.size() >= threshold) {
+                            windowConsumer.accept(ProviderUtil.compressChanges(window));
+                            window = new ArrayList<>();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!window.isEmpty()) {
+            windowConsumer.accept(ProviderUtil.compressChanges(window));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Failed to delete the spill file {}", spillFile, e);
+            }
+        }
+    }
+
+    private void startSpilling() {
+        try {
+            spillFile = spillDirectory != null ? Files.createTempFile(spillDirectory,
+                    "trs-changelog-", ".spill") : Files.createTempFile("trs-changelog-",
+                    ".spill");
+            spillCounter = new CountingOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(spillFile)));
+            spill = new DataOutputStream(spillCounter);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("More than {} change events to catch up with, spilling them to {}", threshold,
+                spillFile);
+        for (ChangeLog page : pages) {
+            write(page.getChange());
+        }
+        pages.clear();
+        bufferedEvents = 0;
+    }
+
+    private void write(final List<ChangeEvent> changes) {
+        if (spilledPages == pageOffsets.length) {
+            pageOffsets = Arrays.copyOf(pageOffsets, spilledPages * 2);
+        }
+        pageOffsets[spilledPages++] = spillCounter.getCount();
+        try {
+            spill.writeInt(changes.size());
+            for (ChangeEvent changeEvent : changes) {
+                if (changeEvent instanceof Creation) {
+                    spill.writeByte(CREATION);
+                } else if (changeEvent instanceof Deletion) {
+                    spill.writeByte(DELETION);
+                } else {
+                    spill.writeByte(MODIFICATION);
+                }
+                spill.writeInt(changeEvent.getOrder());
+                spill.writeUTF(changeEvent.getAbout().toString());
+                spill.writeUTF(changeEvent.getChanged().toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<ChangeEvent> read(final DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<ChangeEvent> changes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final ChangeEvent changeEvent;
+            switch (in.readByte()) {
+                case CREATION:
+                    changeEvent = new Creation();
+                    break;
+                case DELETION:
+                    changeEvent = new Deletion();
+                    break;
+                default:
+                    changeEvent = new Modification();
+            }
+            changeEvent.setOrder(in.readInt());
+            changeEvent.setAbout(URI.create(in.readUTF()));
+            changeEvent.setChanged(URI.create(in.readUTF()));
+            changes.add(changeEvent);
+        }
+        return changes;
+    }
+}
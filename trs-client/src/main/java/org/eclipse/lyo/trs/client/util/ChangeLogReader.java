@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.core.trs.TRSConstants;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.TrsEndpointErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the TRS root and change log pages in a single pass over the triples, either straight from
+ * the RIOT parser or by replaying an already parsed {@link Model}. Change events are built by their
+ * {@code rdf:type}, which avoids the reflective {@code JenaModelHelper.unmarshal} call per class.
+ * <p>
+ * Only the triples relevant to the TRS vocabulary are retained, so the memory needed is bounded by
+ * the number of change events on the page and not by the size of the page.
+ * <p>
+ * Instances are not thread-safe and are meant to be used for a single page.
+ *
+ * @since 4.0.0
+ */
+public class ChangeLogReader extends StreamRDFBase {
+    private final static Logger log = LoggerFactory.getLogger(ChangeLogReader.class);
+
+    private static final Node TYPE_TRS = NodeFactory.createURI(
+            TRSConstants.TRS_TYPE_TRACKED_RESOURCE_SET);
+    private static final Node TYPE_CHANGE_LOG = NodeFactory.createURI(
+            TRSConstants.TRS_TYPE_CHANGE_LOG);
+    private static final Node TYPE_CREATION = NodeFactory.createURI(
+            TRSConstants.TRS_TYPE_CREATION);
+    private static final Node TYPE_MODIFICATION = NodeFactory.createURI(
+            TRSConstants.TRS_TYPE_MODIFICATION);
+    private static final Node TYPE_DELETION = NodeFactory.createURI(
+            TRSConstants.TRS_TYPE_DELETION);
+
+    private static final Node P_CHANGED = NodeFactory.createURI(TRSConstants.TRS_CHANGED);
+    private static final Node P_ORDER = NodeFactory.createURI(TRSConstants.TRS_ORDER);
+    private static final Node P_PREVIOUS = NodeFactory.createURI(TRSConstants.TRS_PREVIOUS);
+    private static final Node P_BASE = NodeFactory.createURI(TRSConstants.TRS_BASE);
+
+    private final Map<Node, Description> descriptions = new LinkedHashMap<>();
+
+    /**
+     * Replay all triples of the model into a new reader.
+     */
+    public static ChangeLogReader fromModel(final Model model) {
+        final ChangeLogReader reader = new ChangeLogReader();
+        StreamOps.sendGraphToStream(model.getGraph(), reader);
+        return reader;
+    }
+
+    @Override
+    public void triple(final Triple triple) {
+        final Node p = triple.getPredicate();
+        final Node o = triple.getObject();
+        if (RDF.Nodes.type.equals(p)) {
+            if (isTrsType(o)) {
+                describe(triple.getSubject()).type = o;
+            }
+        } else if (P_CHANGED.equals(p)) {
+            describe(triple.getSubject()).changed = o;
+        } else if (P_ORDER.equals(p)) {
+            describe(triple.getSubject()).order = o;
+        } else if (P_PREVIOUS.equals(p)) {
+            describe(triple.getSubject()).previous = o;
+        } else if (P_BASE.equals(p)) {
+            describe(triple.getSubject()).base = o;
+        }
+    }
+
+    @Override
+    public void quad(final Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    /**
+     * Build the change log from the triples received so far. All change events found on the page
+     * are attached to the change log regardless of the {@code trs:change} links, as done by the
+     * previous unmarshalling code.
+     *
+     * @return change log pojo or an empty change log if the page does not contain exactly one
+     */
+    public ChangeLog getChangeLog() {
+        ChangeLog changeLog = null;
+        int changeLogCount = 0;
+        final List<ChangeEvent> changes = new ArrayList<>();
+        for (Map.Entry<Node, Description> entry : descriptions.entrySet()) {
+            final Node subject = entry.getKey();
+            final Description d = entry.getValue();
+            if (TYPE_CHANGE_LOG.equals(d.type)) {
+                changeLogCount++;
+                changeLog = new ChangeLog();
+                changeLog.setAbout(toUri(subject));
+                changeLog.setPrevious(toUri(d.previous));
+            } else if (d.type != null && !TYPE_TRS.equals(d.type)) {
+                final ChangeEvent event = toChangeEvent(subject, d);
+                if (event != null) {
+                    changes.add(event);
+                }
+            }
+        }
+
+        if (changeLogCount != 1) {
+            log.warn("the change log was missing; returning an empty one");
+            return new ChangeLog();
+        }
+        changeLog.setChange(changes);
+        return changeLog;
+    }
+
+    /**
+     * Build the tracked resource set together with its embedded change log.
+     *
+     * @return the TRS pojo
+     * @throws IllegalArgumentException if the triples do not describe exactly one TRS
+     */
+    public TrackedResourceSet getTrackedResourceSet() {
+        TrackedResourceSet trs = null;
+        for (Map.Entry<Node, Description> entry : descriptions.entrySet()) {
+            if (TYPE_TRS.equals(entry.getValue().type)) {
+                if (trs != null) {
+                    trs = null;
+                    break;
+                }
+                trs = new TrackedResourceSet();
+                trs.setAbout(toUri(entry.getKey()));
+                trs.setBase(toUri(entry.getValue().base));
+            }
+        }
+        if (trs == null) {
+            throw new IllegalArgumentException("TRS resource cannot be extracted from the Model");
+        }
+
+        try {
+            trs.setChangeLog(getChangeLog());
+        } catch (URISyntaxException e) {
+            // TODO https://github.com/eclipse/lyo.core/issues/102
+            throw new IllegalStateException("Should never happen");
+        }
+        return trs;
+    }
+
+    private Description describe(final Node subject) {
+        return descriptions.computeIfAbsent(subject, s -> new Description());
+    }
+
+    private static boolean isTrsType(final Node type) {
+        return TYPE_CREATION.equals(type) || TYPE_MODIFICATION.equals(type) || TYPE_DELETION.equals(
+                type) || TYPE_CHANGE_LOG.equals(type) || TYPE_TRS.equals(type);
+    }
+
+    private static ChangeEvent toChangeEvent(final Node subject, final Description d) {
+        if (d.changed == null || !d.changed.isURI()) {
+            log.warn("Change event {} has no trs:changed resource; skipping", subject);
+            return null;
+        }
+
+        final ChangeEvent event;
+        if (TYPE_CREATION.equals(d.type)) {
+            event = new Creation();
+        } else if (TYPE_MODIFICATION.equals(d.type)) {
+            event = new Modification();
+        } else {
+            event = new Deletion();
+        }
+        event.setAbout(toUri(subject));
+        event.setChanged(toUri(d.changed));
+        if (d.order != null && d.order.isLiteral()) {
+            event.setOrder(toOrder(subject, d.order));
+        }
+        return event;
+    }
+
+    /**
+     * @throws TrsEndpointErrorException if the trs:order is not an integer in the range of the
+     *                                   change event pojo
+     */
+    private static int toOrder(final Node subject, final Node order) {
+        try {
+            final Object value = order.getLiteralValue();
+            final BigDecimal number = value instanceof Number ? new BigDecimal(value.toString())
+                    : new BigDecimal(order.getLiteralLexicalForm().trim());
+            return number.intValueExact();
+        } catch (DatatypeFormatException | NumberFormatException | ArithmeticException e) {
+            throw new TrsEndpointErrorException(
+                    "Change event " + subject + " has an invalid trs:order " + order, e);
+        }
+    }
+
+    private static URI toUri(final Node node) {
+        if (node == null || !node.isURI()) {
+            return null;
+        }
+        return URI.create(node.getURI());
+    }
+
+    /**
+     * The subset of the resource description that is relevant for the TRS pojos.
+     */
+    private static class Description {
+        private Node type;
+        private Node changed;
+        private Node order;
+        private Node previous;
+        private Node base;
+    }
+}
@@ -1,18 +1,20 @@
 package org.eclipse.lyo.trs.client.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
-import java.util.Arrays;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.eclipse.lyo.core.trs.Base;
 import org.eclipse.lyo.core.trs.ChangeLog;
-import org.eclipse.lyo.core.trs.Creation;
-import org.eclipse.lyo.core.trs.Deletion;
-import org.eclipse.lyo.core.trs.Modification;
 import org.eclipse.lyo.core.trs.Page;
 import org.eclipse.lyo.core.trs.TrackedResourceSet;
 import org.eclipse.lyo.oslc4j.core.exception.LyoModelException;
@@ -40,39 +42,11 @@ class ClientUtil {
      *
      * @return change log pojo
      */
-    static ChangeLog extractChangeLogFromRdfModel(Model rdFModel) throws LyoModelException {
+    static ChangeLog extractChangeLogFromRdfModel(Model rdFModel) {
         log.debug("started extracting change log from rdf model");
-        ChangeLog[] changeLogs;
-
-        Modification[] modifications;
-        Deletion[] deletions;
-        Creation[] creations;
-
-        changeLogs = JenaModelHelper.unmarshal(rdFModel, ChangeLog.class);
-        creations = JenaModelHelper.unmarshal(rdFModel, Creation.class);
-        modifications = JenaModelHelper.unmarshal(rdFModel, Modification.class);
-        deletions = JenaModelHelper.unmarshal(rdFModel, Deletion.class);
-
-        if (ProviderUtil.isNotEmptySingletonArray(changeLogs) && changeLogs[0] != null) {
-            ChangeLog changeLog = changeLogs[0];
-            changeLog.getChange().clear();
-            if (ProviderUtil.isNotEmpty(modifications)) {
-                changeLog.getChange().addAll(Arrays.asList((Modification[]) modifications));
-            }
-
-            if (ProviderUtil.isNotEmpty(creations)) {
-                changeLog.getChange().addAll(Arrays.asList((Creation[]) creations));
-            }
-
-            if (ProviderUtil.isNotEmpty(deletions)) {
-                changeLog.getChange().addAll(Arrays.asList((Deletion[]) deletions));
-            }
-            log.debug("finished extracting change log set from rdf model");
-            return changeLog;
-        } else {
-            log.warn("the change log was missing; returning an empty one");
-            return new ChangeLog();
-        }
+        final ChangeLog changeLog = ChangeLogReader.fromModel(rdFModel).getChangeLog();
+        log.debug("finished extracting change log set from rdf model");
+        return changeLog;
     }
 
     /**
@@ -113,46 +87,22 @@ class ClientUtil {
     }
 
     /**
-     * use osl4j functionality to retrieve a TRS object from the rdf model of
-     * the TRS returned by the server
+     * retrieve a TRS object from the rdf model of the TRS returned by the server
      *
      * @param rdFModel the rdf model
      *
      * @return the TRS pojo extracted from the TRS rdf model
      */
-    static TrackedResourceSet extractTrsFromRdfModel(Model rdFModel)
-            throws LyoModelException {
+    static TrackedResourceSet extractTrsFromRdfModel(Model rdFModel) {
         log.debug("started extracting tracked resource set from rdf model");
-
-        TrackedResourceSet[] trackedResourceSets = JenaModelHelper.unmarshal(rdFModel,
-                TrackedResourceSet.class);
-
-        if (ProviderUtil.isNotEmptySingletonArray(trackedResourceSets) && trackedResourceSets[0] != null) {
-            TrackedResourceSet trs = trackedResourceSets[0];
-            ChangeLog trsChangeLog = extractChangeLogFromRdfModel(rdFModel);
-            try {
-                trs.setChangeLog(trsChangeLog);
-            } catch (URISyntaxException e) {
-                // TODO https://github.com/eclipse/lyo.core/issues/102
-                throw new IllegalStateException("Should never happen");
-            }
-            log.debug("finished extracting tracked resource set from rdf model");
-            return trs;
-        }
-        throw new IllegalArgumentException("TRS resource cannot be extracted from the Model");
+        final TrackedResourceSet trs = ChangeLogReader.fromModel(rdFModel).getTrackedResourceSet();
+        log.debug("finished extracting tracked resource set from rdf model");
+        return trs;
     }
 
     static Object extractResourceFromResponse(final Response response, final Class<?> objClass)
             throws TrsEndpointConfigException, TrsEndpointErrorException, LyoModelException {
-        final Response.StatusType responseInfo = response.getStatusInfo();
-        final Response.Status.Family httpCodeType = responseInfo.getFamily();
-        if (httpCodeType.equals(Response.Status.Family.CLIENT_ERROR)) {
-//            TODO these are not TRS exceptions but OSLC Client exceptions
-            throw new TrsEndpointConfigException("Error " + responseInfo.getReasonPhrase());
-        } else if (httpCodeType.equals(Response.Status.Family.SERVER_ERROR)) {
-//            TODO these are not TRS exceptions but OSLC Client exceptions
-            throw new TrsEndpointErrorException("Error " + responseInfo.getReasonPhrase());
-        }
+        checkResponseStatus(response);
         if (AbstractResource.class.isAssignableFrom(objClass)) {
             Object objToRet = response.readEntity(objClass);
             log.trace("Finished consuming content from server response");
@@ -164,6 +114,19 @@ class ClientUtil {
         throw new IllegalStateException("The resources could not be fetched");
     }
 
+    static void checkResponseStatus(final Response response)
+            throws TrsEndpointConfigException, TrsEndpointErrorException {
+        final Response.StatusType responseInfo = response.getStatusInfo();
+        final Response.Status.Family httpCodeType = responseInfo.getFamily();
+        if (httpCodeType.equals(Response.Status.Family.CLIENT_ERROR)) {
+//            TODO these are not TRS exceptions but OSLC Client exceptions
+            throw new TrsEndpointConfigException("Error " + responseInfo.getReasonPhrase());
+        } else if (httpCodeType.equals(Response.Status.Family.SERVER_ERROR)) {
+//            TODO these are not TRS exceptions but OSLC Client exceptions
+            throw new TrsEndpointErrorException("Error " + responseInfo.getReasonPhrase());
+        }
+    }
+
     /**
      * Extract and return a Jena model from the response if possible
      *
@@ -172,40 +135,109 @@ class ClientUtil {
      */
     private static Model extractModelFromResponse(final Response clientResponse)
             throws LyoModelException {
+        final Model rdFModel = ModelFactory.createDefaultModel();
+        if (!readResponse(clientResponse, StreamRDFLib.graph(rdFModel.getGraph()))) {
+            return null;
+        }
+
+        if (!rdFModel.isEmpty() && log.isDebugEnabled()) {
+            log.debug("Created model contains {} statements", rdFModel.size());
+        }
+
+        return rdFModel;
+    }
+
+    /**
+     * Parse the response body into the given sink. The body is streamed straight into the RIOT
+     * parser, using the syntax declared in the Content-Type header (RDF/XML if none is given). When
+     * TRACE logging is enabled, the body is buffered as a string first so that it can be logged.
+     *
+     * @param clientResponse response object from which the triples are read
+     * @param sink           receiver of the parsed triples
+     *
+     * @return false if the response had no body
+     */
+    static boolean readResponse(final Response clientResponse, final StreamRDF sink)
+            throws LyoModelException {
 
         // FIXME Andrew@2019-07-15: proper exception handling
         if (clientResponse == null) {
             log.warn("The server response is null. Returning null");
-            return null;
+            return false;
+        }
+
+        final Lang lang = langFromResponse(clientResponse);
+        if (log.isTraceEnabled()) {
+            return readResponseString(clientResponse, lang, sink);
         }
 
+        log.trace("Streaming server response as {}", lang.getName());
+        try (InputStream is = clientResponse.readEntity(InputStream.class)) {
+            if (is == null) {
+                log.warn("The server response is null. Returning null");
+                return false;
+            }
+            RDFDataMgr.parse(sink, is, null, lang);
+        } catch (IOException | RiotException e) {
+            throw new LyoModelException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Buffer the whole response as a string before parsing it. Only used for TRACE logging, use
+     * {@link #readResponse(Response, StreamRDF)} otherwise.
+     */
+    private static boolean readResponseString(final Response clientResponse, final Lang lang,
+            final StreamRDF sink) throws LyoModelException {
         final String responseAsString = clientResponse.readEntity(String.class);
         log.trace("Response:\n{}\n", responseAsString);
 
         if (responseAsString == null) {
             log.warn("The server response is null. Returning null");
-            return null;
+            return false;
         }
 
         log.trace("Creating Jena model from server response string");
 
-        final Model rdFModel = ModelFactory.createDefaultModel();
-
         try {
-            try (InputStream is = new ByteArrayInputStream(responseAsString.getBytes())) {
-                rdFModel.read(is, null);
-            }
-        } catch (IOException e) {
+            RDFParser.create().fromString(responseAsString).lang(lang).parse(sink);
+        } catch (RiotException e) {
             throw new LyoModelException(e);
         }
 
         log.trace("OK! Created Jena model from server response string");
+        return true;
+    }
 
-        if (!rdFModel.isEmpty() && log.isDebugEnabled()) {
-            log.debug("Created model contains {} statements", rdFModel.size());
+    /**
+     * Determine the RDF syntax of the response body from its Content-Type.
+     *
+     * @return the matching RIOT language or RDF/XML if the media type is missing or unknown
+     */
+    static Lang langFromResponse(final Response clientResponse) {
+        final MediaType mediaType = clientResponse.getMediaType();
+        if (mediaType == null) {
+            return Lang.RDFXML;
         }
+        return langFromMediaType(mediaType.getType() + "/" + mediaType.getSubtype());
+    }
 
-        return rdFModel;
+    /**
+     * @param mediaType media type without parameters, may be null
+     *
+     * @return the matching RIOT language or RDF/XML if the media type is missing or unknown
+     */
+    static Lang langFromMediaType(final String mediaType) {
+        if (mediaType == null) {
+            return Lang.RDFXML;
+        }
+        final Lang lang = RDFLanguages.contentTypeToLang(mediaType);
+        if (lang == null) {
+            log.debug("Unknown RDF media type '{}', falling back to RDF/XML", mediaType);
+            return Lang.RDFXML;
+        }
+        return lang;
     }
 
 }
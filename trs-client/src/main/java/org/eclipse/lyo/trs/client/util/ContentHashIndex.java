@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.google.common.hash.HashCode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content hash of the representation last written for each tracked resource, see
+ * {@link ModelHasher}. Kept in memory and, if a file is given, logged to it: each {@link #save()}
+ * appends a {@code <hash> <uri>} line per resource put since the previous save and a
+ * {@code - <uri>} line per resource removed. The log is compacted when it is opened, on the
+ * first save after a {@link #clear()} and once it holds more than twice as many lines as there
+ * are resources (and at least {@code compactionRecords}), so indexing a base page by page
+ * writes each hash about once. A line torn by a crash is ignored. Thread-safe.
+ *
+ * @since 4.0.0
+ */
+public class ContentHashIndex {
+    private final static Logger log = LoggerFactory.getLogger(ContentHashIndex.class);
+    public static final int DEFAULT_COMPACTION_RECORDS = 10_000;
+    private static final String REMOVED = "-";
+
+    private final Map<URI, HashCode> hashes = new ConcurrentHashMap<>();
+    /** resources put or removed since the last save */
+    private final Set<URI> changed = ConcurrentHashMap.newKeySet();
+    private final Path file;
+    private final int compactionRecords;
+    /** lines in the file */
+    private long records;
+    private volatile boolean cleared;
+
+    /**
+     * Create an index that is only kept in memory.
+     */
+    public ContentHashIndex() {
+        this.file = null;
+        this.compactionRecords = DEFAULT_COMPACTION_RECORDS;
+    }
+
+    /**
+     * Create an index logged to the file, loading it if the file exists.
+     */
+    public ContentHashIndex(final Path file) {
+        this(file, DEFAULT_COMPACTION_RECORDS);
+    }
+
+    /**
+     * Create an index logged to the file, loading it if the file exists.
+     *
+     * @param file              index log
+     * @param compactionRecords minimum number of lines in the log before it is compacted
+     */
+    public ContentHashIndex(final Path file, final int compactionRecords) {
+        this.file = file;
+        this.compactionRecords = Math.max(compactionRecords, 1);
+        if (Files.exists(file)) {
+            load();
+        }
+        compact();
+    }
+
+    public HashCode get(final URI resource) {
+        return hashes.get(resource);
+    }
+
+    public void put(final URI resource, final HashCode hash) {
+        hashes.put(resource, hash);
+        if (file != null) {
+            changed.add(resource);
+        }
+    }
+
+    public void remove(final URI resource) {
+        hashes.remove(resource);
+        if (file != null) {
+            changed.add(resource);
+        }
+    }
+
+    public void clear() {
+        cleared = true;
+        hashes.clear();
+        changed.clear();
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    /**
+     * Append the changes since the previous save to the log and sync it, compacting the log if
+     * it has grown too large. Does nothing for an in-memory index.
+     */
+    public synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        if (cleared || records + changed.size() > Math.max(compactionRecords, 2L * hashes.size())) {
+            compact();
+            return;
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        long appended = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel,
+                     StandardCharsets.UTF_8.newEncoder(), -1))) {
+            for (Iterator<URI> it = changed.iterator(); it.hasNext(); ) {
+                final URI resource = it.next();
+                // removed first, so a concurrent put is logged again by the next save
+                it.remove();
+                final HashCode hash = hashes.get(resource);
+                writeRecord(writer, hash != null ? hash.toString() : REMOVED, resource);
+                appended++;
+            }
+            writer.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the content hash index to " + file, e);
+        } finally {
+            records += appended;
+        }
+        log.debug("Appended {} content hashes to {}", appended, file);
+    }
+
+    private void compact() {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        cleared = false;
+        changed.clear();
+        long written = 0;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer writer = new BufferedWriter(Channels.newWriter(channel,
+                         StandardCharsets.UTF_8.newEncoder(), -1))) {
+                for (Map.Entry<URI, HashCode> entry : hashes.entrySet()) {
+                    writeRecord(writer, entry.getValue().toString(), entry.getKey());
+                    written++;
+                }
+                writer.flush();
+                channel.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact the content hash index in " + file,
+                    e);
+        }
+        records = written;
+        log.debug("Compacted {} content hashes into {}", written, file);
+    }
+
+    private void load() {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final boolean torn = !endsWithNewline();
+            String line = reader.readLine();
+            while (line != null) {
+                final String next = reader.readLine();
+                if (next == null && torn) {
+                    break;
+                }
+                loadRecord(line);
+                line = next;
+            }
+        } catch (IOException e) {
+            // a broken index only costs the writes it would have saved
+            log.warn("Failed to load the content hash index from {}, starting empty", file, e);
+            hashes.clear();
+        }
+        log.debug("Loaded {} content hashes from {}", hashes.size(), file);
+    }
+
+    private void loadRecord(final String line) {
+        final int separator = line.indexOf(' ');
+        try {
+            if (separator <= 0) {
+                throw new IllegalArgumentException("no separator");
+            }
+            final URI resource = URI.create(line.substring(separator + 1));
+            final String hash = line.substring(0, separator);
+            if (REMOVED.equals(hash)) {
+                hashes.remove(resource);
+            } else {
+                hashes.put(resource, HashCode.fromString(hash));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping a broken content hash record in {}: {}", file, line);
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return true;
+            }
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static void writeRecord(final Writer writer, final String hash, final URI resource)
+            throws IOException {
+        writer.write(hash);
+        writer.write(' ');
+        writer.write(resource.toString());
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.model.BasePage;
+
+/**
+ * Adapts a blocking {@link ITrackedResourceClient} to {@link IAsyncTrackedResourceClient} by
+ * running every call on the given executor; each fetch in flight holds a thread of the executor.
+ * Counterpart of {@link BlockingTrackedResourceClient}.
+ *
+ * @since 4.0.0
+ */
+public class ExecutorTrackedResourceClient implements IAsyncTrackedResourceClient {
+    private final ITrackedResourceClient trsClient;
+    private final Executor executor;
+
+    /**
+     * @param trsClient blocking client
+     * @param executor  executor on which the blocking calls are made, see
+     *                  {@link TrsConsumerUtils#boundedFetchExecutor(int, int)}
+     */
+    public ExecutorTrackedResourceClient(final ITrackedResourceClient trsClient,
+            final Executor executor) {
+        this.trsClient = trsClient;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Model> fetchTRSRemoteResource(final URI resource) {
+        return CompletableFuture.supplyAsync(() -> trsClient.fetchTRSRemoteResource(resource),
+                executor);
+    }
+
+    @Override
+    public CompletableFuture<TrackedResourceSet> extractRemoteTrs(final URI trsUri) {
+        return CompletableFuture.supplyAsync(() -> trsClient.extractRemoteTrs(trsUri), executor);
+    }
+
+    @Override
+    public CompletableFuture<ChangeLog> fetchRemoteChangeLog(final URI changeLogUrl) {
+        return CompletableFuture.supplyAsync(() -> trsClient.fetchRemoteChangeLog(changeLogUrl),
+                executor);
+    }
+
+    @Override
+    public CompletableFuture<Base> fetchRemoteBase(final URI baseUrl) {
+        return CompletableFuture.supplyAsync(() -> trsClient.fetchRemoteBase(baseUrl), executor);
+    }
+
+    @Override
+    public CompletableFuture<BasePage> fetchRemoteBasePage(final URI basePageUri) {
+        return CompletableFuture.supplyAsync(() -> trsClient.fetchRemoteBasePage(basePageUri),
+                executor);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Limits the number of requests in flight to each host, independently of the number of threads
+ * fetching. Meant to be used with a thread-per-fetch executor, where the thread count does not
+ * bound the load put on a provider.
+ *
+ * @since 4.0.0
+ */
+public class HostThrottledTrackedResourceClient implements ITrackedResourceClient {
+    private final ITrackedResourceClient delegate;
+    private final int permitsPerHost;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate       client performing the requests
+     * @param permitsPerHost max number of requests in flight to a single host (and port)
+     */
+    public HostThrottledTrackedResourceClient(final ITrackedResourceClient delegate,
+            final int permitsPerHost) {
+        this.delegate = delegate;
+        this.permitsPerHost = permitsPerHost;
+    }
+
+    @NotNull
+    @Override
+    public Model fetchTRSRemoteResource(final URI resource)
+            throws RepresentationRetrievalException {
+        return throttled(resource, () -> delegate.fetchTRSRemoteResource(resource));
+    }
+
+    /**
+     * @deprecated holds the whole base in memory; use {@link #fetchRemoteBasePages(URI)}
+     */
+    @Deprecated
+    @Override
+    public List<Base> updateBases(final TrackedResourceSet updatedTrs) {
+        return throttled(updatedTrs.getBase(), () -> delegate.updateBases(updatedTrs));
+    }
+
+    @Override
+    public TrackedResourceSet extractRemoteTrs(final URI trsUri) {
+        return throttled(trsUri, () -> delegate.extractRemoteTrs(trsUri));
+    }
+
+    @Override
+    public ChangeLog fetchRemoteChangeLog(final URI changeLogURl) {
+        return throttled(changeLogURl, () -> delegate.fetchRemoteChangeLog(changeLogURl));
+    }
+
+    @Override
+    public Base fetchRemoteBase(final URI baseUrl) {
+        return throttled(baseUrl, () -> delegate.fetchRemoteBase(baseUrl));
+    }
+
+    @Override
+    public BasePage fetchRemoteBasePage(final URI basePageUri) {
+        return throttled(basePageUri, () -> delegate.fetchRemoteBasePage(basePageUri));
+    }
+
+    @Override
+    public Iterator<BasePage> fetchRemoteBasePages(final URI firstBasePageUri) {
+        return new BasePageIterator(firstBasePageUri, this::fetchRemoteBasePage);
+    }
+
+    private <T> T throttled(final URI uri, final Supplier<T> request) {
+        final Semaphore permits = hostPermits.computeIfAbsent(uri.getHost() + ":" + uri.getPort(),
+                host -> new Semaphore(permitsPerHost));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepresentationRetrievalException("Interrupted while waiting to fetch " + uri,
+                    e);
+        }
+        try {
+            return request.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BasePage;
+
+/**
+ * Non-blocking counterpart of {@link ITrackedResourceClient}. The returned futures complete
+ * exceptionally with a {@link RepresentationRetrievalException} if the resource could not be
+ * fetched or parsed.
+ * <p>
+ * Use {@link BlockingTrackedResourceClient} to pass an asynchronous client to the existing
+ * provider handlers.
+ *
+ * @since 4.0.0
+ */
+public interface IAsyncTrackedResourceClient {
+    /**
+     * Fetch a tracked resource or any other RDF resource of the provider
+     *
+     * @param resource url of the resource
+     *
+     * @return future of the parsed model
+     */
+    CompletableFuture<Model> fetchTRSRemoteResource(URI resource);
+
+    /**
+     * Fetch the TRS root including the first page of the change log
+     *
+     * @param trsUri url of the TRS
+     *
+     * @return future of the trs pojo
+     */
+    CompletableFuture<TrackedResourceSet> extractRemoteTrs(URI trsUri);
+
+    /**
+     * @param changeLogUrl url of the change log page
+     *
+     * @return future of the change log pojo
+     */
+    CompletableFuture<ChangeLog> fetchRemoteChangeLog(URI changeLogUrl);
+
+    /**
+     * @param baseUrl url of the base page
+     *
+     * @return future of the base pojo
+     */
+    CompletableFuture<Base> fetchRemoteBase(URI baseUrl);
+
+    /**
+     * @param basePageUri url of the base page
+     *
+     * @return future of the base page with the member URIs, the cutoff event and the next page
+     */
+    CompletableFuture<BasePage> fetchRemoteBasePage(URI basePageUri);
+}
@@ -13,7 +13,7 @@
 package org.eclipse.lyo.trs.client.util;
 
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.jena.rdf.model.Model;
 import org.eclipse.lyo.core.trs.Base;
@@ -21,12 +21,17 @@ import org.eclipse.lyo.core.trs.ChangeLog;
 import org.eclipse.lyo.core.trs.TrackedResourceSet;
 import org.eclipse.lyo.oslc4j.core.exception.LyoModelException;
 import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BasePage;
 import org.jetbrains.annotations.NotNull;
 
 public interface ITrackedResourceClient {
     @NotNull
     Model fetchTRSRemoteResource(URI resource) throws RepresentationRetrievalException;
 
+    /**
+     * @deprecated holds the whole base in memory; use {@link #fetchRemoteBasePages(URI)}
+     */
+    @Deprecated
     List<Base> updateBases(TrackedResourceSet updatedTrs);
 
     /**
@@ -56,4 +61,25 @@ public interface ITrackedResourceClient {
      * @return base pojo
      */
     Base fetchRemoteBase(URI baseUrl);
+
+    /**
+     * Retrieve a single page of the base, keeping only the member URIs, the cutoff event and the
+     * link to the next page
+     *
+     * @param basePageUri url of the base page
+     *
+     * @return base page
+     */
+    BasePage fetchRemoteBasePage(URI basePageUri);
+
+    /**
+     * Lazily retrieve the pages of the base starting from the given page. A page is only requested
+     * when the iterator is advanced, so the memory needed to index the base is bounded by the size
+     * of a page rather than the size of the base.
+     *
+     * @param firstBasePageUri url of the first page of the base
+     *
+     * @return iterator over the base pages
+     */
+    Iterator<BasePage> fetchRemoteBasePages(URI firstBasePageUri);
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.out.NodeFmtLib;
+
+/**
+ * Hashes RDF graphs independently of the order of the triples and of the blank node labels the
+ * parser chose, so that two isomorphic representations of a resource get the same hash.
+ * <p>
+ * Every blank node is labelled by its neighbourhood, refined over a few rounds (colour
+ * refinement). Graphs whose blank nodes can only be told apart at a greater depth may get the
+ * same hash without being isomorphic; OSLC resources rarely nest blank nodes that deep.
+ *
+ * @since 4.0.0
+ */
+public class ModelHasher {
+    private static final int CANONICALISATION_ROUNDS = 4;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final HashCode EMPTY = HASH.hashInt(0);
+
+    public static HashCode hash(final Model model) {
+        return hash(model.getGraph().find().toList());
+    }
+
+    public static HashCode hash(final Collection<Triple> triples) {
+        if (triples.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<Node, String> labels = blankNodeLabels(triples);
+        final List<HashCode> hashes = new ArrayList<>(triples.size());
+        for (Triple triple : triples) {
+            hashes.add(HASH.hashString(label(triple.getSubject(), labels) + " " +
+                    NodeFmtLib.str(triple.getPredicate()) + " " +
+                    label(triple.getObject(), labels), StandardCharsets.UTF_8));
+        }
+        return Hashing.combineUnordered(hashes);
+    }
+
+    private static Map<Node, String> blankNodeLabels(final Collection<Triple> triples) {
+        Map<Node, String> labels = new HashMap<>();
+        for (Triple triple : triples) {
+            if (triple.getSubject().isBlank()) {
+                labels.put(triple.getSubject(), "");
+            }
+            if (triple.getObject().isBlank()) {
+                labels.put(triple.getObject(), "");
+            }
+        }
+        if (labels.isEmpty()) {
+            return labels;
+        }
+        for (int round = 0; round < CANONICALISATION_ROUNDS; round++) {
+            final Map<Node, List<String>> neighbourhoods = new HashMap<>();
+            for (Triple triple : triples) {
+                final String predicate = NodeFmtLib.str(triple.getPredicate());
+                if (triple.getSubject().isBlank()) {
+                    neighbourhoods.computeIfAbsent(triple.getSubject(), k -> new ArrayList<>())
+                            .add("+" + predicate + label(triple.getObject(), labels));
+                }
+                if (triple.getObject().isBlank()) {
+                    neighbourhoods.computeIfAbsent(triple.getObject(), k -> new ArrayList<>())
+                            .add("-" + predicate + label(triple.getSubject(), labels));
+                }
+            }
+            final Map<Node, String> refined = new HashMap<>();
+            for (Map.Entry<Node, List<String>> entry : neighbourhoods.entrySet()) {
+                final List<String> edges = entry.getValue();
+                Collections.sort(edges);
+                refined.put(entry.getKey(),
+                        HASH.hashString(String.join("|", edges), StandardCharsets.UTF_8)
+                                .toString());
+            }
+            labels = refined;
+        }
+        return labels;
+    }
+
+    private static String label(final Node node, final Map<Node, String> labels) {
+        return node.isBlank() ? "_:" + labels.get(node) : NodeFmtLib.str(node);
+    }
+}
@@ -12,14 +12,14 @@
 
 package org.eclipse.lyo.trs.client.util;
 
+import com.google.common.collect.Lists;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.jena.rdf.model.Model;
@@ -30,7 +30,6 @@ import org.eclipse.lyo.core.trs.ChangeLog;
 import org.eclipse.lyo.core.trs.Page;
 import org.eclipse.lyo.core.trs.TrackedResourceSet;
 import org.eclipse.lyo.oslc4j.core.exception.LyoModelException;
-import org.eclipse.lyo.oslc4j.core.model.AbstractResource;
 import org.eclipse.lyo.oslc4j.provider.jena.JenaModelHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,12 +54,63 @@ public class ProviderUtil {
      * given uri and false otherwise
      */
     public static boolean changeLogContainsEvent(URI syncPointUri, ChangeLog changeLog) {
+        return findEvent(syncPointUri, changeLog) != null;
+    }
+
+    /**
+     * returns the change event of the change log page with the given uri or null if the page
+     * does not contain it
+     */
+    public static ChangeEvent findEvent(URI syncPointUri, ChangeLog changeLog) {
         for (ChangeEvent changeEvent : changeLog.getChange()) {
             if (changeEvent.getAbout().equals(syncPointUri)) {
-                return true;
+                return changeEvent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns the change event of the change log page with the given uri and trs:order or null
+     * if the page does not contain it. Only the events with that order are compared by uri.
+     */
+    public static ChangeEvent findEvent(URI syncPointUri, int syncPointOrder,
+            ChangeLog changeLog) {
+        for (ChangeEvent changeEvent : changeLog.getChange()) {
+            if (changeEvent.getOrder() == syncPointOrder
+                    && changeEvent.getAbout().equals(syncPointUri)) {
+                return changeEvent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns the lowest trs:order of the events of the change log page or
+     * {@link Integer#MAX_VALUE} if it has none. The pages are newest first, so the first page
+     * whose lowest order is not above the order of the sync point is the last one to fetch.
+     */
+    public static int minOrder(ChangeLog changeLog) {
+        int minOrder = Integer.MAX_VALUE;
+        for (ChangeEvent changeEvent : changeLog.getChange()) {
+            minOrder = Math.min(minOrder, changeEvent.getOrder());
+        }
+        return minOrder;
+    }
+
+    /**
+     * returns true if the newest change event of the change log page is the given one, i.e. there
+     * is nothing new to process since the sync point
+     */
+    public static boolean isNewestEvent(URI syncPointUri, ChangeLog changeLog) {
+        ChangeEvent newest = null;
+        for (ChangeEvent changeEvent : changeLog.getChange()) {
+            // of the events ordered alike, the last one on the page is the newest
+            if (newest == null || changeEvent.getOrder() >= newest.getOrder()) {
+                newest = changeEvent;
             }
         }
-        return false;
+        return newest != null && newest.getAbout().equals(syncPointUri);
     }
 
     /**
@@ -68,66 +118,147 @@ public class ProviderUtil {
      * given as an argument 2. Cut the list at the last processed change event
      * 3. Optimize the changes list by removing all redundant events for the
      * same resource
+     * <p>
+     * The events are walked newest first, keeping the first (i.e. latest) event seen for each
+     * resource, so the list is compressed in a single pass. The change logs are not modified.
      *
-     * @param changeLogs the list of change logs containing the change events to be
-     *                   processed
+     * @param changeLogs                  the pages of the change log, newest first, as returned
+     *                                    by the provider handlers
+     * @param lastProcessedChangeEventUri the sync point; the events up to it are skipped
      *
      * @return the optimized ordered list of change events
      */
     public static List<ChangeEvent> optimizedChangesList(List<ChangeLog> changeLogs,
             URI lastProcessedChangeEventUri) {
-        Collections.reverse(changeLogs);
+        final List<ChangeEvent> newestFirst = newestFirst(changeLogs);
+        final int syncOrder = syncPointOrder(changeLogs, lastProcessedChangeEventUri);
 
-        ChangeLog firstChangeLog = changeLogs.get(0);
-        List<ChangeEvent> firstChangelogEvents = firstChangeLog.getChange();
+        // NB! Andrew@2018-02-27: this is not going to work for getting all changes via MQTT embedding
+        // TODO Andrew@2019-01-15: refactor to support MQTT
+        // TODO Andrew@2018-02-27: output warning for the events we missed if compress eliminated anything
 
-        // sort the events, needed for the cut-off later
-        firstChangelogEvents.sort(Comparator.comparing(ChangeEvent::getOrder));
-        firstChangeLog.setChange(firstChangelogEvents);
+        // replace all change events for a single resource with the latest event only
+        return compressNewestFirst(newestFirst, lastProcessedChangeEventUri, syncOrder);
+    }
 
-        // TODO Andrew@2018-02-28: just delete this line, getter after setter is some superstition
-//        firstChangelogEvents = firstChangeLog.getChange();
+    /**
+     * Replace all change events for a single resource with the latest event only.
+     *
+     * @param changeEvents change events in change log order
+     *
+     * @return the compressed list of change events, in change log order
+     */
+    public static List<ChangeEvent> compressChanges(List<ChangeEvent> changeEvents) {
+        return compressNewestFirst(Lists.reverse(changeEvents), null, Integer.MIN_VALUE);
+    }
 
-        // if the last processed event is in the CL, it must be in the first
-        // see 'fetchUpdatedChangeLogs' for details why
-        int indexOfSync = -1;
-        for (ChangeEvent changeEvent : firstChangelogEvents) {
-            if (changeEvent.getAbout().equals(lastProcessedChangeEventUri)) {
-                indexOfSync = firstChangelogEvents.indexOf(changeEvent);
+    /**
+     * The events are cut at the sync point itself and not only by trs:order, so that a change log
+     * whose events are ordered alike, e.g. because the provider leaves out trs:order, is cut at
+     * the right place too.
+     */
+    private static List<ChangeEvent> compressNewestFirst(List<ChangeEvent> newestFirst,
+            URI syncPointUri, int syncOrder) {
+        final Set<URI> seenResources = new HashSet<>();
+        final List<ChangeEvent> compressedChanges = new ArrayList<>();
+        for (ChangeEvent changeEvent : newestFirst) {
+            if (changeEvent.getOrder() < syncOrder || changeEvent.getAbout().equals(
+                    syncPointUri)) {
+                // the rest has been processed before
                 break;
             }
+            if (seenResources.add(changeEvent.getChanged())) {
+                compressedChanges.add(changeEvent);
+            }
         }
+        Collections.reverse(compressedChanges);
+        return compressedChanges;
+    }
 
-        firstChangelogEvents = firstChangelogEvents.subList(indexOfSync + 1,
-                firstChangelogEvents.size());
-        firstChangeLog.setChange(firstChangelogEvents);
+    /**
+     * If the last processed event is in the change log, it must be in the oldest page, see
+     * {@code fetchUpdatedChangeLogs} in the provider handlers for details why.
+     *
+     * @return the order of the sync point or {@link Integer#MIN_VALUE} if it is not found
+     */
+    private static int syncPointOrder(List<ChangeLog> changeLogs, URI syncPointUri) {
+        if (syncPointUri != null && !changeLogs.isEmpty()) {
+            for (ChangeEvent changeEvent : changeLogs.get(changeLogs.size() - 1).getChange()) {
+                if (changeEvent.getAbout().equals(syncPointUri)) {
+                    return changeEvent.getOrder();
+                }
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
 
-        List<ChangeEvent> changesToProcess = new ArrayList<>();
-        // merge all changelogs, events after the cutoff from the first log are there
+    /**
+     * Concatenate the events of the change log pages, newest first. The events within a page are
+     * unordered in RDF, so a page is only sorted if it is not already in either order; the pages
+     * themselves are expected to be in order and the whole list is only sorted if they overlap.
+     */
+    private static List<ChangeEvent> newestFirst(List<ChangeLog> changeLogs) {
+        int size = 0;
         for (ChangeLog changeLog : changeLogs) {
-            changesToProcess.addAll(changeLog.getChange());
+            size += changeLog.getChange().size();
         }
-        changesToProcess.sort(Comparator.comparing(ChangeEvent::getOrder));
-
-        // NB! Andrew@2018-02-27: this is not going to work for getting all changes via MQTT embedding
-        // TODO Andrew@2019-01-15: refactor to support MQTT
-        // TODO Andrew@2018-02-27: output warning for the events we missed if compress eliminated anything
+        final Comparator<ChangeEvent> newestFirst = (a, b) -> Integer.compare(b.getOrder(),
+                a.getOrder());
+        final List<ChangeEvent> events = new ArrayList<>(size);
+        boolean pagesInOrder = true;
+        for (ChangeLog changeLog : changeLogs) {
+            final int start = events.size();
+            events.addAll(changeLog.getChange());
+            final List<ChangeEvent> page = events.subList(start, events.size());
+            if (isSorted(page, Collections.reverseOrder(newestFirst))) {
+                Collections.reverse(page);
+            } else if (!isSorted(page, newestFirst)) {
+                page.sort(newestFirst);
+            }
+            if (start > 0 && start < events.size()
+                    && newestFirst.compare(events.get(start - 1), events.get(start)) > 0) {
+                pagesInOrder = false;
+            }
+        }
+        if (!pagesInOrder) {
+            log.warn("The change log pages overlap, sorting all of their events");
+            events.sort(newestFirst);
+        }
+        return events;
+    }
 
-        // replace all change events for a single resource with the latest event only
-        List<ChangeEvent> compressedChanges = compressChanges(changesToProcess);
-        return compressedChanges;
+    private static <T> boolean isSorted(List<T> list, Comparator<? super T> comparator) {
+        for (int i = 1; i < list.size(); i++) {
+            if (comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static List<URI> baseChangeEventsOptimizationSafe(
             List<ChangeEvent> compressedChangesList, List<URI> baseMembers) {
         // do it once to improve performance actually
-        final Set<URI> compressedUris = compressedChangesList.stream()
-                .map(AbstractResource::getAbout)
-                .collect(Collectors.toSet());
+        return baseChangeEventsOptimizationSafe(changedResources(compressedChangesList),
+                baseMembers);
+    }
+
+    /**
+     * remove from the base members the resources for which a change event will be processed
+     * anyway
+     *
+     * @param changedResources the resources changed by the compressed change events, see
+     *                         {@link #changedResources(List)}
+     * @param baseMembers      the members of the base (page)
+     *
+     * @return the members that still need to be indexed
+     */
+    public static List<URI> baseChangeEventsOptimizationSafe(Set<URI> changedResources,
+            List<URI> baseMembers) {
         List<URI> filteredBase = new ArrayList<>(baseMembers.size());
 
         for (URI baseMember : baseMembers) {
-            if (!compressedUris.contains(baseMember)) {
+            if (!changedResources.contains(baseMember)) {
                 filteredBase.add(baseMember);
             } else {
                 log.debug("Removing {} from the base because it has been updated since in the " +
@@ -139,31 +270,9 @@ public class ProviderUtil {
     }
 
     /**
-     * takes an ordered list of change events to be processed and compressed the
-     * list by removing multiple change events for the same resource and keeping
-     * only the latest event for that resource
-     *
-     * @return an ordered optimized list of change events
+     * @return the set of resources changed by the given change events
      */
-    private static List<ChangeEvent> compressChanges(List<ChangeEvent> changesToProcess) {
-        Map<URI, ChangeEvent> resToChangeEventMap = new HashMap<>();
-
-        for (ChangeEvent changeToProcess : changesToProcess) {
-            resToChangeEventMap.put(changeToProcess.getChanged(), changeToProcess);
-        }
-
-        // TODO Andrew@2018-02-27: create compressed list in one go
-        // Algorithm:
-        // - use a hashset to keep track of the resource uris
-        // - walk the changesToProcess in reverse
-        // - reverse the returned list
-        List<ChangeEvent> reducedChangesList;
-        if (!resToChangeEventMap.isEmpty()) {
-            reducedChangesList = new ArrayList<>(resToChangeEventMap.values());
-            reducedChangesList.sort(Comparator.comparing(ChangeEvent::getOrder));
-        } else {
-            reducedChangesList = new ArrayList<>();
-        }
-        return reducedChangesList;
+    public static Set<URI> changedResources(List<ChangeEvent> changeEvents) {
+        return changeEvents.stream().map(ChangeEvent::getChanged).collect(Collectors.toSet());
     }
 }
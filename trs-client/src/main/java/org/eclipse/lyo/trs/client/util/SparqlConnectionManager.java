@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.riot.web.HttpOp;
+import org.apache.jena.update.UpdateExecutionFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sparql.SPARQLRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one {@link SPARQLRepository} per update endpoint and credentials, all of them sharing a
+ * pool of keep-alive HTTP connections, so that the SPARQL sinks do not set up a new repository
+ * and connection for every update. The sinks that need the status code of a failed update post
+ * it over the same pool instead, see {@link #post(String, String, String, String)}; the basic
+ * authentication of each endpoint and set of credentials is then kept for reuse and sent
+ * preemptively. Thread-safe.
+ * <p>
+ * The handlers that are not given a manager use the {@link #getDefault() default} one, which
+ * lives as long as the JVM. Managers created explicitly must be {@link #close() closed}.
+ *
+ * @since 4.0.0
+ */
+public class SparqlConnectionManager implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(SparqlConnectionManager.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 8;
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    /**
+     * Pooled connections idle for longer than this are closed.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    private final int maxConnectionsPerEndpoint;
+    private final PoolingHttpClientConnectionManager connectionPool;
+    private final CloseableHttpClient httpClient;
+    /**
+     * By endpoint, user and password, so that a changed password is never masked by a cached one
+     */
+    private final Map<List<String>, SPARQLRepository> repositories = new ConcurrentHashMap<>();
+    /**
+     * Keyed like {@link #repositories}
+     */
+    private final Map<List<String>, Authentication> authentications = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong saturatedUpdates = new AtomicLong();
+
+    public SparqlConnectionManager() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param maxConnectionsPerEndpoint max number of open connections to one endpoint; updates
+     *                                  beyond that wait for a connection to be released
+     * @param maxConnections            max number of open connections overall
+     */
+    public SparqlConnectionManager(final int maxConnectionsPerEndpoint, final int maxConnections) {
+        this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+        this.connectionPool = new PoolingHttpClientConnectionManager();
+        connectionPool.setDefaultMaxPerRoute(maxConnectionsPerEndpoint);
+        connectionPool.setMaxTotal(maxConnections);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionPool)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(DEFAULT_IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return the manager shared by the handlers created without one
+     */
+    public static SparqlConnectionManager getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Execute a SPARQL update through the repository of the endpoint and credentials, over a
+     * pooled connection.
+     *
+     * @param updateEndpoint SPARQL update endpoint
+     * @param user           username, null if no authentication is needed
+     * @param pwd            password, null if no authentication is needed
+     * @param update         SPARQL update
+     */
+    public void update(final String updateEndpoint, final String user, final String pwd,
+            final String update) {
+        final SPARQLRepository repository = repositories.computeIfAbsent(
+                Arrays.asList(updateEndpoint, user, pwd),
+                k -> createRepository(updateEndpoint, user, pwd));
+        execute(updateEndpoint, () -> {
+            try (RepositoryConnection connection = repository.getConnection()) {
+                connection.prepareUpdate(QueryLanguage.SPARQL, update).execute();
+            }
+        });
+    }
+
+    /**
+     * Post a SPARQL update to the endpoint over a pooled connection, without a repository, so
+     * that a failure reports the status code.
+     *
+     * @param updateEndpoint SPARQL update endpoint
+     * @param user           username, null if no authentication is needed
+     * @param pwd            password, null if no authentication is needed
+     * @param update         SPARQL update
+     *
+     * @throws HttpException with the status code if the endpoint fails the update, or with the
+     *                       I/O error as the cause if the endpoint cannot be reached
+     */
+    public void post(final String updateEndpoint, final String user, final String pwd,
+            final String update) {
+        final HttpClientContext context = HttpClientContext.create();
+        if (user != null && pwd != null && !user.isEmpty() && !pwd.isEmpty()) {
+            authentications.computeIfAbsent(Arrays.asList(updateEndpoint, user, pwd),
+                    k -> new Authentication(updateEndpoint, user, pwd)).applyTo(context);
+        }
+        execute(updateEndpoint, () -> HttpOp.execHttpPost(updateEndpoint,
+                WebContent.contentTypeSPARQLUpdate, update, httpClient, context));
+    }
+
+    /**
+     * Execute a Jena update request over a pooled connection, without authentication.
+     */
+    public void update(final String updateEndpoint, final UpdateRequest request) {
+        execute(updateEndpoint, () -> UpdateExecutionFactory.createRemote(request, updateEndpoint,
+                httpClient).execute());
+    }
+
+    /**
+     * @return the pooled HTTP client, for the sinks that talk to the store without SPARQL; it is
+     * closed together with the manager
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return number of updates executed so far
+     */
+    public long getUpdates() {
+        return updates.get();
+    }
+
+    /**
+     * @return number of updates that found all the connections to their endpoint in use and had
+     * to wait for one; a steadily growing share of {@link #getUpdates()} means the pool is too
+     * small for the number of sinks
+     */
+    public long getSaturatedUpdates() {
+        return saturatedUpdates.get();
+    }
+
+    /**
+     * @return number of connections currently in use
+     */
+    public int getLeasedConnections() {
+        return connectionPool.getTotalStats().getLeased();
+    }
+
+    /**
+     * @return number of updates currently waiting for a connection
+     */
+    public int getPendingConnectionRequests() {
+        return connectionPool.getTotalStats().getPending();
+    }
+
+    /**
+     * @return number of open connections kept alive for reuse
+     */
+    public int getIdleConnections() {
+        return connectionPool.getTotalStats().getAvailable();
+    }
+
+    @Override
+    public void close() {
+        repositories.values().forEach(SPARQLRepository::shutDown);
+        repositories.clear();
+        authentications.clear();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the SPARQL HTTP client", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final PoolStats stats = connectionPool.getTotalStats();
+        return "SparqlConnectionManager{" + "updates=" + updates + ", saturatedUpdates=" +
+                saturatedUpdates + ", pool=" + stats + '}';
+    }
+
+    private void execute(final String updateEndpoint, final Runnable update) {
+        final AtomicInteger endpointInFlight = inFlight.computeIfAbsent(updateEndpoint,
+                k -> new AtomicInteger());
+        updates.incrementAndGet();
+        if (endpointInFlight.incrementAndGet() > maxConnectionsPerEndpoint) {
+            saturatedUpdates.incrementAndGet();
+            log.debug("Connection pool for {} is saturated, waiting for a connection",
+                    updateEndpoint);
+        }
+        try {
+            update.run();
+        } finally {
+            endpointInFlight.decrementAndGet();
+        }
+    }
+
+    private SPARQLRepository createRepository(final String updateEndpoint, final String user,
+            final String pwd) {
+        log.debug("Creating a SPARQL repository for {}", updateEndpoint);
+        final SPARQLRepository repository = new SPARQLRepository(updateEndpoint);
+        repository.setHttpClient(httpClient);
+        if (user != null && pwd != null && !user.isEmpty() && !pwd.isEmpty()) {
+            repository.setUsernameAndPassword(user, pwd);
+        }
+        repository.initialize();
+        return repository;
+    }
+
+    /**
+     * Basic authentication for an endpoint, shared by the requests; the request contexts are not.
+     */
+    private static class Authentication {
+        private final CredentialsProvider credentials = new BasicCredentialsProvider();
+        private final AuthCache authCache = new BasicAuthCache();
+
+        private Authentication(final String updateEndpoint, final String user, final String pwd) {
+            log.debug("Authenticating to {} as {}", updateEndpoint, user);
+            final HttpHost host = URIUtils.extractHost(URI.create(updateEndpoint));
+            credentials.setCredentials(new AuthScope(host),
+                    new UsernamePasswordCredentials(user, pwd));
+            authCache.put(host, new BasicScheme());
+        }
+
+        private void applyTo(final HttpClientContext context) {
+            context.setCredentialsProvider(credentials);
+            context.setAuthCache(authCache);
+        }
+    }
+
+    private static class DefaultHolder {
+        private static final SparqlConnectionManager INSTANCE = new SparqlConnectionManager();
+    }
+}
@@ -19,9 +19,7 @@ package org.eclipse.lyo.trs.client.util;
 import java.io.IOException;
 import java.net.URI;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.update.UpdateExecutionFactory;
 import org.apache.jena.update.UpdateFactory;
-import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
 import org.eclipse.lyo.core.trs.ChangeEvent;
 import org.eclipse.lyo.core.trs.Creation;
@@ -293,10 +291,8 @@ public class SparqlUtil {
      *            sparql update endpoint url
      */
     static public void createGraph(String namedGraphUrl, String serviceUrl) {
-        UpdateRequest request = UpdateFactory.create();
-        request.add(createGraphQuery(namedGraphUrl));
-        UpdateProcessor processor = UpdateExecutionFactory.createRemote(request, serviceUrl);
-        processor.execute();
+        UpdateRequest request = new UpdateRequestBuilder().createGraph(namedGraphUrl).build();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
@@ -309,10 +305,8 @@ public class SparqlUtil {
      *            sparql update endpoint url
      */
     static public void dropGraph(String namedGraphUrl, String serviceUrl) {
-        UpdateRequest request = UpdateFactory.create();
-        request.add(dropGraphQuery(namedGraphUrl));
-        UpdateProcessor processor = UpdateExecutionFactory.createRemote(request, serviceUrl);
-        processor.execute();
+        UpdateRequest request = new UpdateRequestBuilder().dropGraph(namedGraphUrl).build();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
@@ -328,10 +322,9 @@ public class SparqlUtil {
      *            the sparql update endpoint
      */
     static public void addTriplesToNamedGraph(Model jenaModel, String namedGraphUrl, String serviceUrl) {
-        UpdateRequest request = UpdateFactory.create();
-        request.add(addTriplesToGraphQuery(namedGraphUrl, jenaModel));
-        UpdateProcessor processor = UpdateExecutionFactory.createRemote(request, serviceUrl);
-        processor.execute();
+        UpdateRequest request = new UpdateRequestBuilder().insertData(namedGraphUrl, jenaModel)
+                .build();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
@@ -344,10 +337,8 @@ public class SparqlUtil {
      *            the sparql update endpoint
      */
     static public void removeAllTriplesInNamedGraph(String namedGraphUrl, String serviceUrl) {
-        UpdateRequest request = UpdateFactory.create();
-        request.add(removeAllTriplesInGraphQuery(namedGraphUrl));
-        UpdateProcessor processor = UpdateExecutionFactory.createRemote(request, serviceUrl);
-        processor.execute();
+        UpdateRequest request = new UpdateRequestBuilder().clearGraph(namedGraphUrl).build();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
@@ -363,13 +354,14 @@ public class SparqlUtil {
      *            the sparql update endpoint
      */
     static public void processChangeEvent(ChangeEvent changeEvent, Model model, String serviceUrl) {
-        String changeEventQuery = getChangeEventQuery(changeEvent, model);
-        processQuery(changeEventQuery, serviceUrl);
+        UpdateRequest request = new UpdateRequestBuilder().changeEvent(changeEvent, model).build();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
      * Send the given sparql update to the sparql update service using the jena
-     * arq libraries
+     * arq libraries over a pooled connection of the default
+     * {@link SparqlConnectionManager}
      *
      * @param query
      *            sparql update to be processeda
@@ -379,13 +371,13 @@ public class SparqlUtil {
     static public void processQuery(String query, String serviceUrl) {
         UpdateRequest request = UpdateFactory.create();
         request.add(query);
-        UpdateProcessor processor = UpdateExecutionFactory.createRemote(request, serviceUrl);
-        processor.execute();
+        SparqlConnectionManager.getDefault().update(serviceUrl, request);
     }
 
     /**
      * Send the given sparql update to the sparql update service using the
-     * sesame libraries
+     * sesame libraries over a pooled connection of the default
+     * {@link SparqlConnectionManager}
      *
      * @param query
      *            sparql update to be processeda
@@ -397,11 +389,7 @@ public class SparqlUtil {
      *            password for authentication if applicable
      */
     static public void processQuery_sesame(String query, String serviceUrl, String user, String pwd) {
-        SPARQLRepository repo = new SPARQLRepository(serviceUrl);
-        repo.setUsernameAndPassword(user, pwd);
-        repo.initialize();
-        RepositoryConnection rc = repo.getConnection();
-        processQuery_sesame(query, rc);
+        SparqlConnectionManager.getDefault().update(serviceUrl, user, pwd, query);
     }
 
     /**
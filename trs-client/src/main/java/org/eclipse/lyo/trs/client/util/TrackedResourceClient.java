@@ -12,43 +12,166 @@
 
 package org.eclipse.lyo.trs.client.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.eclipse.lyo.core.trs.Base;
 import org.eclipse.lyo.core.trs.ChangeLog;
 import org.eclipse.lyo.core.trs.Page;
 import org.eclipse.lyo.core.trs.TrackedResourceSet;
 import org.eclipse.lyo.oslc4j.client.OslcClient;
 import org.eclipse.lyo.oslc4j.core.exception.LyoModelException;
+import org.eclipse.lyo.oslc4j.core.model.OslcMediaType;
 import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
 import org.eclipse.lyo.trs.client.exceptions.TrsEndpointConfigException;
 import org.eclipse.lyo.trs.client.exceptions.TrsEndpointErrorException;
+import org.eclipse.lyo.trs.client.model.BasePage;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TrackedResourceClient implements ITrackedResourceClient {
     private final static Logger log = LoggerFactory.getLogger(TrackedResourceClient.class);
+    /**
+     * Default number of TRS roots and change log pages for which the HTTP validators are kept
+     */
+    public static final int DEFAULT_VALIDATOR_CACHE_SIZE = 32;
+    /**
+     * Max number of redirects followed for a TRS root or a change log page
+     */
+    public static final int MAX_REDIRECTS = 5;
+
     private final OslcClient oslcClient;
+    /**
+     * Parsed TRS roots and change log pages by their final URI after redirects, together with their ETag / Last-Modified
+     * validators. Used to send conditional requests and to skip parsing on 304 Not Modified.
+     */
+    private final Cache<URI, ValidatedResource> validatorCache;
 
-    public TrackedResourceClient(final OslcClient oslcClient) {this.oslcClient = oslcClient;}
+    public TrackedResourceClient(final OslcClient oslcClient) {
+        this(oslcClient, DEFAULT_VALIDATOR_CACHE_SIZE);
+    }
+
+    /**
+     * @param oslcClient         HTTP client
+     * @param validatorCacheSize max number of TRS roots and change log pages kept for conditional
+     *                           requests, 0 disables conditional requests
+     */
+    public TrackedResourceClient(final OslcClient oslcClient, final int validatorCacheSize) {
+        this.oslcClient = oslcClient;
+        this.validatorCache = CacheBuilder.newBuilder().maximumSize(validatorCacheSize).build();
+    }
 
     @NotNull
     @Override
     public Model fetchTRSRemoteResource(final URI uri) throws RepresentationRetrievalException {
+        final Model resource = ModelFactory.createDefaultModel();
+        readRemoteResource(uri, StreamRDFLib.graph(resource.getGraph()));
+        return resource;
+    }
+
+    /**
+     * Fetch the resource and stream its triples into the sink without building an intermediate
+     * model.
+     *
+     * @param uri  resource to fetch
+     * @param sink receiver of the parsed triples
+     */
+    private void readRemoteResource(final URI uri, final StreamRDF sink)
+            throws RepresentationRetrievalException {
         final Response response = oslcClient.getResource(uri.toString());
-        final Model resource;
         try {
-            // TODO Andrew@2019-07-15: JHM typed method use
-            // TODO Andrew@2019-07-15: switch to extractModel
-            resource = (Model) ClientUtil.extractResourceFromResponse(response, Model.class);
+            readResponse(uri, response, sink);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Fetch a TRS root or a change log page with a conditional request if its validators are
+     * known. On 304 Not Modified the previously parsed pojo is returned without any parsing.
+     * Redirects are followed here and the validators are kept by the final URI, so that a
+     * redirected resource can still be answered with 304.
+     *
+     * @param uri       resource to fetch
+     * @param extractor builds the pojo from the parsed page
+     *
+     * @return the cached or freshly parsed pojo; callers must not modify it
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T fetchIfModified(final URI uri, final Function<ChangeLogReader, T> extractor)
+            throws RepresentationRetrievalException {
+        URI location = uri;
+        Response response;
+        for (int redirects = 0; ; redirects++) {
+            final ValidatedResource cached = validatorCache.getIfPresent(location);
+            final Map<String, String> headers = new HashMap<>();
+            if (cached != null && cached.eTag != null) {
+                headers.put(HttpHeaders.IF_NONE_MATCH, cached.eTag);
+            }
+            if (cached != null && cached.lastModified != null) {
+                headers.put(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+            }
+            // the same Accept on every request, so that the validators match the variant
+            response = oslcClient.getResource(location.toString(), headers,
+                    OslcMediaType.APPLICATION_RDF_XML, false);
+            if (cached != null
+                    && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                response.close();
+                log.debug("{} was not modified, reusing the previous representation", location);
+                return (T) cached.resource;
+            }
+            final String redirect = response.getHeaderString(HttpHeaders.LOCATION);
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.REDIRECTION
+                    || redirect == null || redirects >= MAX_REDIRECTS) {
+                break;
+            }
             response.close();
-            if(resource != null) {
-                return resource;
+            location = location.resolve(redirect);
+            log.debug("{} is redirected to {}", uri, location);
+        }
+
+        try {
+            final ChangeLogReader reader = new ChangeLogReader();
+            readResponse(uri, response, reader);
+            final T resource = extractor.apply(reader);
+
+            final String eTag = response.getHeaderString(HttpHeaders.ETAG);
+            final String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            if (eTag != null || lastModified != null) {
+                validatorCache.put(location,
+                        new ValidatedResource(eTag, lastModified, resource));
             } else {
+                validatorCache.invalidate(location);
+            }
+            return resource;
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Parse the body of a TRS response into the sink, mapping the endpoint and parsing errors to
+     * {@link RepresentationRetrievalException}.
+     */
+    static void readResponse(final URI uri, final Response response,
+            final StreamRDF sink) throws RepresentationRetrievalException {
+        try {
+            ClientUtil.checkResponseStatus(response);
+            if (!ClientUtil.readResponse(response, sink)) {
                 throw new RepresentationRetrievalException("Empty model was retrieved");
             }
         } catch (TrsEndpointConfigException e) {
@@ -73,7 +196,9 @@ public class TrackedResourceClient implements ITrackedResourceClient {
      * @param updatedTrs the trs object retrieved after retrieving it using the trs uri
      *
      * @return the pages of the base of this trs provider
+     * @deprecated holds the whole base in memory; use {@link #fetchRemoteBasePages(URI)}
      */
+    @Deprecated
     @Override
     public List<Base> updateBases(TrackedResourceSet updatedTrs)
             throws LyoModelException, RepresentationRetrievalException {
@@ -97,16 +222,14 @@ public class TrackedResourceClient implements ITrackedResourceClient {
     @Override
     public TrackedResourceSet extractRemoteTrs(URI trsUri)
             throws LyoModelException, RepresentationRetrievalException {
-        Model rdfModel = fetchTRSRemoteResource(trsUri);
-        return ClientUtil.extractTrsFromRdfModel(rdfModel);
+        return copyOf(fetchIfModified(trsUri, ChangeLogReader::getTrackedResourceSet));
     }
 
     @Override
     public ChangeLog fetchRemoteChangeLog(URI changeLogURl)
             throws IllegalArgumentException, SecurityException, LyoModelException,
             RepresentationRetrievalException {
-        Model rdfModel = fetchTRSRemoteResource(changeLogURl);
-        return ClientUtil.extractChangeLogFromRdfModel(rdfModel);
+        return copyOf(fetchIfModified(changeLogURl, ChangeLogReader::getChangeLog));
     }
 
     @Override
@@ -115,4 +238,55 @@ public class TrackedResourceClient implements ITrackedResourceClient {
         final Model rdFModel = fetchTRSRemoteResource(baseUrl);
         return ClientUtil.extractBaseFromRdfModel(rdFModel);
     }
+
+    @Override
+    public BasePage fetchRemoteBasePage(final URI basePageUri)
+            throws RepresentationRetrievalException {
+        final BasePageReader reader = new BasePageReader();
+        readRemoteResource(basePageUri, reader);
+        return reader.getBasePage(basePageUri);
+    }
+
+    @Override
+    public Iterator<BasePage> fetchRemoteBasePages(final URI firstBasePageUri) {
+        return new BasePageIterator(firstBasePageUri, this::fetchRemoteBasePage);
+    }
+
+    /**
+     * Callers may reorder and cut the change lists, so every caller gets its own copy of the
+     * cached pojos. The change events themselves are shared.
+     */
+    private static TrackedResourceSet copyOf(final TrackedResourceSet trs) {
+        final TrackedResourceSet copy = new TrackedResourceSet();
+        copy.setAbout(trs.getAbout());
+        copy.setBase(trs.getBase());
+        try {
+            copy.setChangeLog(copyOf(trs.getChangeLog()));
+        } catch (URISyntaxException e) {
+            // TODO https://github.com/eclipse/lyo.core/issues/102
+            throw new IllegalStateException("Should never happen");
+        }
+        return copy;
+    }
+
+    private static ChangeLog copyOf(final ChangeLog changeLog) {
+        final ChangeLog copy = new ChangeLog();
+        copy.setAbout(changeLog.getAbout());
+        copy.setPrevious(changeLog.getPrevious());
+        copy.setChange(new ArrayList<>(changeLog.getChange()));
+        return copy;
+    }
+
+    private static class ValidatedResource {
+        private final String eTag;
+        private final String lastModified;
+        private final Object resource;
+
+        private ValidatedResource(final String eTag, final String lastModified,
+                final Object resource) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.resource = resource;
+        }
+    }
 }
@@ -12,16 +12,25 @@
 
 package org.eclipse.lyo.trs.client.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
-import org.eclipse.lyo.oslc4j.client.OslcClient;
+import org.eclipse.lyo.trs.client.config.FetchExecutionMode;
 import org.eclipse.lyo.trs.client.config.TrsConsumerConfiguration;
 import org.eclipse.lyo.trs.client.config.TrsProviderConfiguration;
 import org.eclipse.lyo.trs.client.handlers.ConcurrentTrsProviderHandler;
 import org.eclipse.lyo.trs.client.handlers.IProviderEventHandler;
 import org.eclipse.lyo.trs.client.handlers.IProviderHandler;
+import org.eclipse.lyo.trs.client.handlers.ProviderHandlerOptions;
 import org.eclipse.lyo.trs.client.handlers.sparql.SparqlBatchingHandler;
 import org.eclipse.lyo.trs.client.handlers.sparql.SparqlDirectHandler;
 import org.eclipse.lyo.trs.client.handlers.TrsProviderHandler;
@@ -77,27 +86,129 @@ public class TrsConsumerUtils {
 //                consumerConfig.getSparqlUpdateUrl(), consumerConfig.getSparqlQueryUrl(),
 //                consumerConfig.getSparqlUsername(), consumerConfig.getSparqlPassword(), cfg.getBasicAuthUsername(),
 //                cfg.getBasicAuthPassword(), trsClient);
-        final ITrackedResourceClient trsClient = trsClientFactory(consumerConfig.getHttpClient());
+        final ITrackedResourceClient trsClient = trsClientFactory(consumerConfig);
         final IProviderEventHandler handler = new SparqlDirectHandler(
                 consumerConfig.getSparqlUpdateUrl());
-        IProviderHandler providerHandler = new TrsProviderHandler(cfg.getTrsUri(), trsClient,
-                handler);
-        return providerHandler;
+        final ProviderHandlerOptions options = handlerOptions(consumerConfig);
+        options.setPrefetchWindow(consumerConfig.getPrefetchWindow());
+        return new TrsProviderHandler(cfg.getTrsUri(), trsClient, handler, options);
     }
 
     private static IProviderHandler concurrentProviderFor(
             final TrsConsumerConfiguration consumerConfig, final TrsProviderConfiguration cfg) {
-        final ITrackedResourceClient trsClient = trsClientFactory(consumerConfig.getHttpClient());
+        final ITrackedResourceClient trsClient = trsClientFactory(consumerConfig);
         final IProviderEventHandler handler = new SparqlBatchingHandler(
                 consumerConfig.getSparqlUpdateUrl(), consumerConfig.getSparqlUsername(),
                 consumerConfig.getSparqlPassword());
-        final ConcurrentTrsProviderHandler providerHandler = new ConcurrentTrsProviderHandler(
-                cfg.getTrsUri(), trsClient, handler);
-        return providerHandler;
+        final ProviderHandlerOptions options = handlerOptions(consumerConfig);
+        options.setTransformExecutor(consumerConfig.getTransformExecutor());
+        options.setMaxPending(consumerConfig.getFetchQueueCapacity());
+        return new ConcurrentTrsProviderHandler(cfg.getTrsUri(), trsClient, handler, options);
+    }
+
+    /**
+     * @return the options shared by the sequential and concurrent provider handlers
+     */
+    private static ProviderHandlerOptions handlerOptions(
+            final TrsConsumerConfiguration consumerConfig) {
+        final ProviderHandlerOptions options = new ProviderHandlerOptions();
+        options.setFetchExecutor(consumerConfig.getFetchExecutor());
+        options.setChunkSize(consumerConfig.getHandlerChunkSize());
+        options.setCheckpointStore(consumerConfig.getCheckpointStore());
+        options.setSpillDirectory(consumerConfig.getSpillDirectory());
+        options.setSpillThreshold(consumerConfig.getSpillThreshold());
+        options.setMaxFailedCycles(consumerConfig.getMaxFailedCycles());
+        return options;
+    }
+
+    /**
+     * Create an executor for fetching and handling the tracked resources that is meant to be
+     * shared by all concurrent provider handlers. At most {@code concurrency} tasks run at once and
+     * at most {@code queueCapacity} wait; further submissions run on the submitting (polling)
+     * thread, which slows the producer down instead of growing the number of threads. Submissions
+     * after shutdown are rejected with a {@link RejectedExecutionException}.
+     *
+     * @param concurrency   number of worker threads
+     * @param queueCapacity number of tasks that can wait for a worker
+     *
+     * @return a new bounded executor with daemon threads
+     */
+    public static ExecutorService boundedFetchExecutor(final int concurrency,
+            final int queueCapacity) {
+        return boundedExecutor("trs-fetch-%d", concurrency, queueCapacity);
+    }
+
+    /**
+     * Create an executor for preparing the updates of the concurrent provider handlers (see
+     * {@link org.eclipse.lyo.trs.client.handlers.IStagedProviderEventHandler}), with the same
+     * backpressure as {@link #boundedFetchExecutor(int, int)}. The work is CPU bound, so the
+     * concurrency should be close to the number of cores.
+     *
+     * @param concurrency   number of worker threads
+     * @param queueCapacity number of tasks that can wait for a worker
+     *
+     * @return a new bounded executor with daemon threads
+     */
+    public static ExecutorService boundedTransformExecutor(final int concurrency,
+            final int queueCapacity) {
+        return boundedExecutor("trs-transform-%d", concurrency, queueCapacity);
+    }
+
+    private static ExecutorService boundedExecutor(final String nameFormat,
+            final int concurrency, final int queueCapacity) {
+        return new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build(),
+                (task, executor) -> {
+                    // unlike CallerRunsPolicy, do not silently drop the task after shutdown
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("The executor is shut down");
+                    }
+                    task.run();
+                });
+    }
+
+    /**
+     * Create an executor that starts a new virtual thread for every fetch. Virtual threads are
+     * looked up reflectively so that the library keeps running on Java 8; if they are not
+     * available, a {@link #boundedFetchExecutor(int, int) bounded platform pool} is returned
+     * instead.
+     *
+     * @param maxTasks            max number of fetches started and not yet finished; submitting
+     *                            more blocks the polling thread
+     * @param fallbackConcurrency number of platform threads if virtual threads are not available
+     *
+     * @return a virtual-thread-per-task executor or a bounded platform pool
+     */
+    public static ExecutorService virtualThreadFetchExecutor(final int maxTasks,
+            final int fallbackConcurrency) {
+        try {
+            final ExecutorService virtualThreads = (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+            log.debug("Fetching tracked resources on virtual threads");
+            return new LimitedExecutorService(virtualThreads, maxTasks);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // preview JDKs throw UnsupportedOperationException from the factory method
+            log.warn("Virtual threads are not available in this JVM; falling back to {} " +
+                    "platform threads", fallbackConcurrency);
+            return boundedFetchExecutor(fallbackConcurrency, maxTasks);
+        }
     }
 
     @NotNull
-    private static ITrackedResourceClient trsClientFactory(final OslcClient httpClient) {
-        return new TrackedResourceClient(httpClient);
+    private static ITrackedResourceClient trsClientFactory(
+            final TrsConsumerConfiguration consumerConfig) {
+        if (consumerConfig.getFetchExecutionMode() == FetchExecutionMode.NON_BLOCKING) {
+            // the connection pool limits the requests per host
+            return new BlockingTrackedResourceClient(
+                    new AsyncTrackedResourceClient(consumerConfig.getAsyncHttpClient()));
+        }
+        final ITrackedResourceClient trsClient = new TrackedResourceClient(
+                consumerConfig.getHttpClient());
+        if (consumerConfig.getPerHostFetchLimit() > 0) {
+            return new HostThrottledTrackedResourceClient(trsClient,
+                    consumerConfig.getPerHostFetchLimit());
+        }
+        return trsClient;
     }
 }
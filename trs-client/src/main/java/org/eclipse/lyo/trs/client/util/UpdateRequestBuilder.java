@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.util.Collection;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.modify.request.QuadDataAcc;
+import org.apache.jena.sparql.modify.request.UpdateClear;
+import org.apache.jena.sparql.modify.request.UpdateCreate;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.sparql.modify.request.UpdateDrop;
+import org.apache.jena.update.UpdateRequest;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+
+/**
+ * Assembles SPARQL update requests from graph names and triples directly, so that they are only
+ * serialised once when sent, instead of being built as text and parsed back like the
+ * {@code SparqlUtil.*Query} methods do.
+ *
+ * @since 4.0.0
+ */
+public class UpdateRequestBuilder {
+    private final UpdateRequest request = new UpdateRequest();
+
+    public UpdateRequestBuilder createGraph(final String graph) {
+        request.add(new UpdateCreate(graph));
+        return this;
+    }
+
+    public UpdateRequestBuilder dropGraph(final String graph) {
+        request.add(new UpdateDrop(graph));
+        return this;
+    }
+
+    public UpdateRequestBuilder clearGraph(final String graph) {
+        request.add(new UpdateClear(graph, true));
+        return this;
+    }
+
+    /**
+     * {@code INSERT DATA} of all the triples of the model into the graph.
+     */
+    public UpdateRequestBuilder insertData(final String graph, final Model model) {
+        return insertData(graph, model.getGraph());
+    }
+
+    public UpdateRequestBuilder insertData(final String graph, final Graph triples) {
+        final Node graphNode = NodeFactory.createURI(graph);
+        final QuadDataAcc quads = new QuadDataAcc();
+        triples.find().forEachRemaining(t -> quads.addQuad(Quad.create(graphNode, t)));
+        request.add(new UpdateDataInsert(quads));
+        return this;
+    }
+
+    /**
+     * {@code DELETE DATA} of the triples from the graph; the triples must not contain blank nodes.
+     */
+    public UpdateRequestBuilder deleteData(final String graph, final Collection<Triple> triples) {
+        final Node graphNode = NodeFactory.createURI(graph);
+        final QuadDataAcc quads = new QuadDataAcc();
+        for (Triple triple : triples) {
+            quads.addQuad(Quad.create(graphNode, triple));
+        }
+        request.add(new UpdateDataDelete(quads));
+        return this;
+    }
+
+    /**
+     * The operations reflecting the change event, same as
+     * {@link SparqlUtil#getChangeEventQuery(ChangeEvent, Model)}.
+     *
+     * @param model updated representation of the changed resource; ignored for a deletion
+     */
+    public UpdateRequestBuilder changeEvent(final ChangeEvent changeEvent, final Model model) {
+        final String graph = changeEvent.getChanged().toString();
+        if (changeEvent instanceof Creation) {
+            createGraph(graph).insertData(graph, model);
+        } else if (changeEvent instanceof Deletion) {
+            dropGraph(graph);
+        } else if (changeEvent instanceof Modification) {
+            dropGraph(graph).createGraph(graph).insertData(graph, model);
+        }
+        return this;
+    }
+
+    public UpdateRequest build() {
+        return request;
+    }
+}
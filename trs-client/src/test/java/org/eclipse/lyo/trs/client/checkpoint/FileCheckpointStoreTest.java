@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+
+package org.eclipse.lyo.trs.client.checkpoint;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileCheckpointStoreTest {
+    private static final URI TRS = URI.create("https://host/trs");
+    private static final URI OTHER_TRS = URI.create("https://other/trs");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLatestCheckpointReloaded() {
+        final Path file = folder.getRoot().toPath().resolve("checkpoints.wal");
+        try (FileCheckpointStore store = new FileCheckpointStore(file, Long.MAX_VALUE, 100)) {
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/1"), 1));
+            store.save(OTHER_TRS, new Checkpoint(URI.create("https://other/ce/9"), null,
+                    URI.create("https://other/base/2"), 17));
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/2"), 2));
+            store.flush();
+        }
+
+        try (FileCheckpointStore store = new FileCheckpointStore(file)) {
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/2"), 2),
+                    store.load(TRS));
+            Assert.assertEquals(new Checkpoint(URI.create("https://other/ce/9"), null,
+                    URI.create("https://other/base/2"), 17),
+                    store.load(OTHER_TRS));
+            Assert.assertNull(store.load(URI.create("https://unknown/trs")));
+        }
+    }
+
+    @Test
+    public void testTornRecordIgnored() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("checkpoints.wal");
+        try (FileCheckpointStore store = new FileCheckpointStore(file)) {
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/1"), 1));
+        }
+        Files.write(file, (TRS + " https://host/ce/2 2").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (FileCheckpointStore store = new FileCheckpointStore(file)) {
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/1"), 1),
+                    store.load(TRS));
+        }
+    }
+
+    @Test
+    public void testForgottenCheckpointCompacted() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("checkpoints.wal");
+        try (FileCheckpointStore store = new FileCheckpointStore(file, 0, 3)) {
+            for (int i = 1; i <= 5; i++) {
+                store.save(TRS, new Checkpoint(URI.create("https://host/ce/" + i), i));
+            }
+            store.save(TRS, null);
+            Assert.assertNull(store.load(TRS));
+        }
+
+        // compacted after the third and sixth save
+        Assert.assertEquals(0, Files.size(file));
+        try (FileCheckpointStore store = new FileCheckpointStore(file)) {
+            Assert.assertNull(store.load(TRS));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+
+package org.eclipse.lyo.trs.client.checkpoint;
+
+import java.net.URI;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionFactory;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SparqlCheckpointStoreTest {
+    private static final URI TRS = URI.create("https://host/trs");
+
+    @Test
+    public void testCheckpointWrittenOnFlush() {
+        final Dataset dataset = DatasetFactory.createTxnMem();
+        try (RDFConnection connection = RDFConnectionFactory.connect(dataset)) {
+            final SparqlCheckpointStore store = new SparqlCheckpointStore(connection);
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/1"), 1));
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/2"), 2));
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/2"), 2),
+                    store.load(TRS));
+            Assert.assertNull(new SparqlCheckpointStore(connection).load(TRS));
+
+            store.flush();
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/2"), 2),
+                    new SparqlCheckpointStore(connection).load(TRS));
+
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/3"), null));
+            store.flush();
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/3"), null),
+                    new SparqlCheckpointStore(connection).load(TRS));
+
+            store.save(TRS, new Checkpoint(URI.create("https://host/ce/0"), null,
+                    URI.create("https://host/base/2"), 17));
+            store.flush();
+            Assert.assertEquals(new Checkpoint(URI.create("https://host/ce/0"), null,
+                    URI.create("https://host/base/2"), 17),
+                    new SparqlCheckpointStore(connection).load(TRS));
+
+            store.save(TRS, null);
+            store.flush();
+            Assert.assertNull(new SparqlCheckpointStore(connection).load(TRS));
+        }
+    }
+}
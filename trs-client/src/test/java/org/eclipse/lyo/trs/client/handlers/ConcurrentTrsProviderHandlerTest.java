@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.trs.client.checkpoint.FileCheckpointStore;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConcurrentTrsProviderHandlerTest {
+
+    private static final int EVENTS = 40;
+    private static final int MEMBERS = 60;
+    private static final URI TRS_URI = URI.create("https://host/trs");
+
+    @Rule
+    public final TemporaryFolder spillDirectory = new TemporaryFolder();
+    @Rule
+    public final TemporaryFolder checkpointDirectory = new TemporaryFolder();
+
+    private ExecutorService fetchExecutor;
+    private ExecutorService transformExecutor;
+
+    @Before
+    public void setUp() {
+        fetchExecutor = TrsConsumerUtils.boundedFetchExecutor(8, 4);
+        transformExecutor = TrsConsumerUtils.boundedTransformExecutor(2, 4);
+    }
+
+    @After
+    public void tearDown() {
+        fetchExecutor.shutdownNow();
+        transformExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testStagedHandler() {
+        final RecordingHandler handler = new RecordingHandler();
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, MEMBERS), handler, options(8, 100));
+
+        provider.update();
+
+        Assert.assertEquals(0, handler.rebases.get());
+        Assert.assertEquals(1, handler.finishedCycles.get());
+        Assert.assertEquals(EVENTS + MEMBERS, handler.committed.size());
+        Assert.assertEquals(1, handler.maxConcurrentCommits.get());
+        for (int i = 1; i <= EVENTS; i++) {
+            Assert.assertTrue(handler.committed.contains(StubTrackedResourceClient.resource(i)));
+        }
+        for (int i = 1; i <= MEMBERS; i++) {
+            Assert.assertTrue(handler.committed.contains(StubTrackedResourceClient.member(i)));
+        }
+
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testSpilledCatchUp() {
+        final RecordingHandler handler = new RecordingHandler();
+        final ProviderHandlerOptions options = options(8, 100);
+        options.setSpillDirectory(spillDirectory.getRoot().toPath());
+        options.setSpillThreshold(16);
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, MEMBERS), handler, options);
+
+        provider.update();
+
+        Assert.assertEquals(0, handler.rebases.get());
+        // the base, then the change events in windows of 16
+        Assert.assertEquals(1 + 3, handler.finishedCycles.get());
+        Assert.assertEquals(EVENTS + MEMBERS, handler.committed.size());
+        Assert.assertEquals(0, spillDirectory.getRoot().list().length);
+
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testResumedFromCheckpoint() {
+        final Path checkpoints = checkpointDirectory.getRoot().toPath().resolve("trs.wal");
+        try (FileCheckpointStore store = new FileCheckpointStore(checkpoints)) {
+            store.save(TRS_URI, new Checkpoint(StubTrackedResourceClient.changeEvent(30), 30));
+        }
+
+        final RecordingHandler handler = new RecordingHandler();
+        try (FileCheckpointStore store = new FileCheckpointStore(checkpoints)) {
+            final ProviderHandlerOptions options = options(8, 16);
+            options.setCheckpointStore(store);
+            final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                    new StubTrackedResourceClient(EVENTS, MEMBERS), handler, options);
+
+            provider.update();
+        }
+
+        // no base indexing, only the change events after the checkpoint
+        Assert.assertEquals(EVENTS - 30, handler.committed.size());
+        for (int i = 31; i <= EVENTS; i++) {
+            Assert.assertTrue(handler.committed.contains(StubTrackedResourceClient.resource(i)));
+        }
+        try (FileCheckpointStore store = new FileCheckpointStore(checkpoints)) {
+            Assert.assertEquals(new Checkpoint(StubTrackedResourceClient.changeEvent(EVENTS),
+                    EVENTS), store.load(TRS_URI));
+        }
+    }
+
+    @Test
+    public void testFailedBaseMemberFetchResumesIndexing() {
+        final RecordingHandler handler = new RecordingHandler();
+        final AtomicInteger failures = new AtomicInteger();
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, MEMBERS) {
+                    @NotNull
+                    @Override
+                    public Model fetchTRSRemoteResource(final URI resource) {
+                        if (resource.equals(StubTrackedResourceClient.member(5))
+                                && failures.getAndIncrement() == 0) {
+                            throw new RepresentationRetrievalException("unavailable");
+                        }
+                        return super.fetchTRSRemoteResource(resource);
+                    }
+                }, handler, options(8, 16));
+
+        provider.update();
+        // the cycle is not finished without the member
+        Assert.assertEquals(0, handler.finishedCycles.get());
+        Assert.assertFalse(handler.committed.contains(StubTrackedResourceClient.member(5)));
+
+        provider.update();
+        Assert.assertEquals(0, handler.rebases.get());
+        Assert.assertEquals(1, handler.finishedCycles.get());
+        Assert.assertEquals(EVENTS + MEMBERS, handler.committed.size());
+    }
+
+    @Test
+    public void testPreparedOffTheFetchAndPollingThreads() {
+        final Set<String> preparingThreads = ConcurrentHashMap.newKeySet();
+        final RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public URI prepareChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+                preparingThreads.add(Thread.currentThread().getName());
+                return super.prepareChangeEvent(eventMessageTR);
+            }
+        };
+        // runs the transform stage on whichever thread hands the representations over
+        final ProviderHandlerOptions options = options(8, 100);
+        options.setTransformExecutor(Runnable::run);
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, 0), handler, options);
+
+        provider.update();
+
+        Assert.assertEquals(EVENTS, handler.committed.size());
+        Assert.assertFalse(preparingThreads.isEmpty());
+        for (String thread : preparingThreads) {
+            Assert.assertFalse(thread, thread.startsWith("trs-fetch-"));
+            Assert.assertNotEquals(Thread.currentThread().getName(), thread);
+        }
+    }
+
+    @Test
+    public void testPlainHandlerGetsRepresentations() {
+        final List<ChangeEventMessageTR> events = new ArrayList<>();
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, 0), new TestProviderHandler() {
+            @Override
+            public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+                events.add(eventMessageTR);
+            }
+        }, options(8, 100));
+
+        provider.update();
+
+        Assert.assertEquals(EVENTS, events.size());
+        for (ChangeEventMessageTR event : events) {
+            Assert.assertNotNull(event.getTrackedResourceModel());
+        }
+    }
+
+    @Test
+    public void testPlainHandlerGetsChunks() {
+        final List<Integer> memberChunks = new ArrayList<>();
+        final List<Integer> eventChunks = new ArrayList<>();
+        final AtomicInteger finishedCycles = new AtomicInteger();
+        final ConcurrentTrsProviderHandler provider = new ConcurrentTrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, MEMBERS), new TestProviderHandler() {
+            @Override
+            public void handleBaseMembers(final List<BaseMember> baseMembers) {
+                Assert.assertEquals(0, finishedCycles.get());
+                memberChunks.add(baseMembers.size());
+            }
+
+            @Override
+            public void handleChangeEvents(final List<ChangeEventMessageTR> eventMessages) {
+                Assert.assertEquals(0, finishedCycles.get());
+                eventChunks.add(eventMessages.size());
+            }
+
+            @Override
+            public void finishCycle() {
+                finishedCycles.incrementAndGet();
+            }
+        }, options(8, 16));
+
+        provider.update();
+
+        Assert.assertEquals(1, finishedCycles.get());
+        Assert.assertEquals(MEMBERS, memberChunks.stream().mapToInt(Integer::intValue).sum());
+        Assert.assertEquals(EVENTS, eventChunks.stream().mapToInt(Integer::intValue).sum());
+        for (int size : memberChunks) {
+            Assert.assertTrue(size <= 16);
+        }
+        for (int size : eventChunks) {
+            Assert.assertTrue(size <= 16);
+        }
+    }
+
+    private ProviderHandlerOptions options(final int maxPending, final int chunkSize) {
+        final ProviderHandlerOptions options = new ProviderHandlerOptions();
+        options.setFetchExecutor(fetchExecutor);
+        options.setTransformExecutor(transformExecutor);
+        options.setMaxPending(maxPending);
+        options.setChunkSize(chunkSize);
+        return options;
+    }
+
+    /**
+     * Prepares the resource URI as the update and checks that commits never overlap.
+     */
+    private static class RecordingHandler implements IStagedProviderEventHandler<URI> {
+        private final Set<URI> committed = new HashSet<>();
+        private final AtomicInteger concurrentCommits = new AtomicInteger();
+        private final AtomicInteger maxConcurrentCommits = new AtomicInteger();
+        private final AtomicInteger finishedCycles = new AtomicInteger();
+        private final AtomicInteger rebases = new AtomicInteger();
+
+        @Override
+        public URI prepareBaseMember(final BaseMember baseMember) {
+            return baseMember.getUri();
+        }
+
+        @Override
+        public URI prepareChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+            Assert.assertNotNull(eventMessageTR.getTrackedResourceModel());
+            return eventMessageTR.getChangeEvent().getChanged();
+        }
+
+        @Override
+        public void commit(final URI update) {
+            maxConcurrentCommits.accumulateAndGet(concurrentCommits.incrementAndGet(), Math::max);
+            committed.add(update);
+            concurrentCommits.decrementAndGet();
+        }
+
+        @Override
+        public void finishCycle() {
+            finishedCycles.incrementAndGet();
+        }
+
+        @Override
+        public void handleBaseMember(final BaseMember baseMember) {
+            commit(prepareBaseMember(baseMember));
+        }
+
+        @Override
+        public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+            commit(prepareChangeEvent(eventMessageTR));
+        }
+
+        @Override
+        public void rebase() {
+            rebases.incrementAndGet();
+        }
+    }
+}
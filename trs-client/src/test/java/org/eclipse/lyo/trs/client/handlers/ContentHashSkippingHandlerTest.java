@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.ContentHashIndex;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentHashSkippingHandlerTest {
+
+    private static final URI RESOURCE = URI.create("http://host/r/1");
+    private static final String TURTLE = "<http://host/r/1> <http://host/p> \"a\" ; " +
+            "<http://host/q> [ <http://host/p> \"c\" ] .";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<URI> written = new ArrayList<>();
+    private final IProviderEventHandler recorder = new IProviderEventHandler() {
+        @Override
+        public void finishCycle() {
+        }
+
+        @Override
+        public void handleBaseMember(final BaseMember baseMember) {
+            written.add(baseMember.getUri());
+        }
+
+        @Override
+        public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+            written.add(eventMessageTR.getChangeEvent().getChanged());
+        }
+
+        @Override
+        public void rebase() {
+        }
+    };
+
+    @Test
+    public void testUnchangedRepresentationsAreSkipped() {
+        final ContentHashSkippingHandler handler = new ContentHashSkippingHandler(recorder,
+                new ContentHashIndex());
+
+        handler.handleBaseMember(new BaseMember(RESOURCE, parse(TURTLE)));
+        handler.finishCycle();
+        // parsed again, so the blank node gets a different label
+        handler.handleChangeEvent(new ChangeEventMessageTR(modification(2), parse(TURTLE)));
+        handler.finishCycle();
+        handler.handleChangeEvent(new ChangeEventMessageTR(modification(3),
+                parse("<http://host/r/1> <http://host/p> \"b\" .")));
+        handler.finishCycle();
+
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals(1, handler.getSkipped());
+    }
+
+    @Test
+    public void testIndexIsPersisted() {
+        final Path file = folder.getRoot().toPath().resolve("hashes.idx");
+        final ContentHashSkippingHandler first = new ContentHashSkippingHandler(recorder,
+                new ContentHashIndex(file));
+        first.handleBaseMember(new BaseMember(RESOURCE, parse(TURTLE)));
+        first.handleBaseMember(new BaseMember(URI.create("http://host/r/2"), parse(TURTLE)));
+        first.handleChangeEvent(new ChangeEventMessageTR(
+                new Deletion(URI.create("http://host/ce/1"), URI.create("http://host/r/2"), 1),
+                null));
+        first.finishCycle();
+
+        final ContentHashIndex reloaded = new ContentHashIndex(file);
+        final ContentHashSkippingHandler second = new ContentHashSkippingHandler(recorder,
+                reloaded);
+        second.handleBaseMember(new BaseMember(RESOURCE, parse(TURTLE)));
+
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertEquals(1, second.getSkipped());
+    }
+
+    private static Modification modification(final int order) {
+        return new Modification(URI.create("http://host/ce/" + order), RESOURCE, order);
+    }
+
+    private static Model parse(final String turtle) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.read(new StringReader(turtle), null, "TURTLE");
+        return model;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LaneExecutorTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = TrsConsumerUtils.boundedFetchExecutor(8, 16);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSameKeyRunsInOrder() {
+        final LaneExecutor lanes = new LaneExecutor(executor, 32);
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        final Map<URI, List<Integer>> applied = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < 1000; i++) {
+            final URI resource = URI.create("https://host/r/" + (i % 10));
+            final int order = i;
+            barrier.execute(lanes.lane(resource), () -> {
+                final List<Integer> resourceOrder = applied.computeIfAbsent(resource,
+                        r -> new ArrayList<>());
+                // only one task per key runs at a time, so no locking is needed here
+                resourceOrder.add(order);
+            });
+        }
+        barrier.await();
+
+        Assert.assertEquals(10, applied.size());
+        for (List<Integer> resourceOrder : applied.values()) {
+            Assert.assertEquals(100, resourceOrder.size());
+            for (int i = 1; i < resourceOrder.size(); i++) {
+                Assert.assertTrue(resourceOrder.get(i - 1) < resourceOrder.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testDistinctKeysRunInParallel() {
+        final LaneExecutor lanes = new LaneExecutor(executor, 32);
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        // every task waits for all the others, so they must all run at once
+        final CountDownLatch running = new CountDownLatch(8);
+
+        for (int i = 0; i < 8; i++) {
+            barrier.execute(lanes.lane(URI.create("https://host/r/" + i)), () -> {
+                running.countDown();
+                try {
+                    Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        barrier.await();
+    }
+
+    @Test
+    public void testRejectedLaneStillDrains() {
+        final LaneExecutor lanes = new LaneExecutor(executor, 32);
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        final List<Integer> applied = new ArrayList<>();
+        executor.shutdown();
+
+        for (int i = 0; i < 10; i++) {
+            final int order = i;
+            barrier.execute(lanes.lane("key"), () -> applied.add(order));
+        }
+        barrier.await();
+
+        Assert.assertEquals(10, applied.size());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.eclipse.lyo.trs.client.util.ITrackedResourceClient;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A provider with a single base page and a single change log page. The change log has a cutoff
+ * event {@code ce/0} followed by modifications {@code ce/1..n} of the resources {@code r/1..n};
+ * the base members are {@code m/1..m}. Representations take a random time to fetch.
+ */
+public class StubTrackedResourceClient implements ITrackedResourceClient {
+    private final int events;
+    private final int members;
+
+    public StubTrackedResourceClient(final int events, final int members) {
+        this.events = events;
+        this.members = members;
+    }
+
+    public static URI resource(final int i) {
+        return URI.create("https://host/r/" + i);
+    }
+
+    public static URI member(final int i) {
+        return URI.create("https://host/m/" + i);
+    }
+
+    public static URI changeEvent(final int i) {
+        return URI.create("https://host/ce/" + i);
+    }
+
+    @NotNull
+    @Override
+    public Model fetchTRSRemoteResource(final URI resource) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final Model model = ModelFactory.createDefaultModel();
+        model.createResource(resource.toString()).addProperty(DCTerms.title, "r");
+        return model;
+    }
+
+    @Override
+    public TrackedResourceSet extractRemoteTrs(final URI trsUri) {
+        final ChangeLog changeLog = new ChangeLog();
+        changeLog.setPrevious(URI.create(RDF.nil.getURI()));
+        final List<ChangeEvent> changes = new ArrayList<>();
+        for (int i = 0; i <= events; i++) {
+            final Modification modification = new Modification();
+            modification.setAbout(changeEvent(i));
+            modification.setChanged(resource(i));
+            modification.setOrder(i);
+            changes.add(modification);
+        }
+        Collections.shuffle(changes);
+        changeLog.setChange(changes);
+
+        final TrackedResourceSet trs = new TrackedResourceSet();
+        trs.setAbout(trsUri);
+        trs.setBase(URI.create("https://host/base"));
+        try {
+            trs.setChangeLog(changeLog);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        return trs;
+    }
+
+    @Override
+    public Iterator<BasePage> fetchRemoteBasePages(final URI firstBasePageUri) {
+        final List<URI> baseMembers = new ArrayList<>();
+        for (int i = 1; i <= members; i++) {
+            baseMembers.add(member(i));
+        }
+        return Collections.singletonList(
+                new BasePage(firstBasePageUri, changeEvent(0), baseMembers, null)).iterator();
+    }
+
+    @Override
+    public List<Base> updateBases(final TrackedResourceSet updatedTrs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ChangeLog fetchRemoteChangeLog(final URI changeLogURl) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Base fetchRemoteBase(final URI baseUrl) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BasePage fetchRemoteBasePage(final URI basePageUri) {
+        throw new UnsupportedOperationException();
+    }
+}
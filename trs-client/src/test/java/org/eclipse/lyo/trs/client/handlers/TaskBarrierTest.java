@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TaskBarrierTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = TrsConsumerUtils.boundedFetchExecutor(2, 4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAwaitWaitsForAllTasks() {
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        final AtomicInteger done = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            barrier.execute(() -> {
+                sleep();
+                done.incrementAndGet();
+            });
+        }
+        barrier.await();
+
+        Assert.assertEquals(100, done.get());
+    }
+
+    @Test
+    public void testBarriersShareTheExecutor() {
+        final TaskBarrier slow = new TaskBarrier(executor);
+        final TaskBarrier fast = new TaskBarrier(executor);
+        final AtomicInteger fastDone = new AtomicInteger();
+
+        slow.execute(TaskBarrierTest::sleep);
+        fast.execute(fastDone::incrementAndGet);
+        fast.await();
+
+        Assert.assertEquals(1, fastDone.get());
+        slow.await();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAwaitRethrowsFailure() {
+        final TaskBarrier barrier = new TaskBarrier(executor);
+
+        barrier.execute(() -> {
+            throw new IllegalArgumentException("handler failed");
+        });
+        barrier.await();
+    }
+
+    @Test
+    public void testShutDownExecutorRejects() {
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        executor.shutdown();
+
+        try {
+            barrier.execute(TaskBarrierTest::sleep);
+            Assert.fail("The task must be rejected, not dropped");
+        } catch (RejectedExecutionException e) {
+            // the rejected task is not waited for
+            barrier.await();
+        }
+    }
+
+    @Test
+    public void testAwaitWaitsForTrackedOperation() {
+        final TaskBarrier barrier = new TaskBarrier(executor);
+        final CompletableFuture<Void> fetch = new CompletableFuture<>();
+
+        barrier.track(fetch);
+        executor.execute(() -> {
+            sleep();
+            fetch.completeExceptionally(new IllegalArgumentException("fetch failed"));
+        });
+
+        try {
+            barrier.await();
+            Assert.fail("The failure of the operation must fail the cycle");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.checkpoint.FileCheckpointStore;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.Checkpoint;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.TrsConsumerUtils;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrsProviderHandlerPrefetchTest {
+
+    private static final int EVENTS = 50;
+    private static final URI TRS_URI = URI.create("https://host/trs");
+
+    @Rule
+    public final TemporaryFolder checkpointDirectory = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = TrsConsumerUtils.boundedFetchExecutor(8, 16);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEventsHandledInChangeLogOrder() {
+        final List<URI> handled = new ArrayList<>();
+        final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI, new StubTrackedResourceClient(EVENTS, 0),
+                new TestProviderHandler() {
+                    @Override
+                    public void handleChangeEvent(final ChangeEventMessageTR eventMessageTR) {
+                        final URI changed = eventMessageTR.getChangeEvent().getChanged();
+                        // the representation must belong to the event it is handed over with
+                        Assert.assertTrue(eventMessageTR.getTrackedResourceModel().containsResource(
+                                ModelFactory.createDefaultModel().createResource(
+                                        changed.toString())));
+                        handled.add(changed);
+                    }
+                }, options(4, 100));
+
+        provider.update();
+
+        Assert.assertEquals(EVENTS, handled.size());
+        for (int i = 0; i < EVENTS; i++) {
+            Assert.assertEquals(StubTrackedResourceClient.resource(i + 1), handled.get(i));
+        }
+
+        // the cursor is on the newest event, so the next cycle is idle
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testEventsHandledInChunks() {
+        final List<Integer> chunkSizes = new ArrayList<>();
+        final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, 0), new TestProviderHandler() {
+            @Override
+            public void handleChangeEvents(final List<ChangeEventMessageTR> eventMessages) {
+                chunkSizes.add(eventMessages.size());
+            }
+        }, options(4, 16));
+
+        provider.update();
+
+        Assert.assertEquals(Arrays.asList(16, 16, 16, 2), chunkSizes);
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testUnorderedChangeLogWalkedBackByUri() {
+        final int[] published = {2};
+        final List<URI> handled = new ArrayList<>();
+        final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(0, 0) {
+            @Override
+            public TrackedResourceSet extractRemoteTrs(final URI trsUri) {
+                final TrackedResourceSet trs = super.extractRemoteTrs(trsUri);
+                try {
+                    trs.setChangeLog(unorderedPage(published[0] / 3, published[0]));
+                } catch (URISyntaxException e) {
+                    throw new IllegalStateException(e);
+                }
+                return trs;
+            }
+
+            @Override
+            public ChangeLog fetchRemoteChangeLog(final URI changeLogURl) {
+                final String path = changeLogURl.getPath();
+                return unorderedPage(Integer.parseInt(path.substring(path.lastIndexOf('/') + 1)),
+                        published[0]);
+            }
+        }, new TestProviderHandler() {
+            @Override
+            public void handleChangeEvents(final List<ChangeEventMessageTR> eventMessages) {
+                for (ChangeEventMessageTR eventMessage : eventMessages) {
+                    handled.add(eventMessage.getChangeEvent().getChanged());
+                }
+            }
+
+            @Override
+            public void rebase() {
+                Assert.fail("The sync point must be found on the older page");
+            }
+        }, options(4, 16));
+
+        provider.update();
+        Assert.assertEquals(Arrays.asList(StubTrackedResourceClient.resource(1),
+                StubTrackedResourceClient.resource(2)), handled);
+
+        // the sync point ce/2 is now on the older of three pages without trs:order
+        published[0] = 7;
+        handled.clear();
+        provider.update();
+        Assert.assertEquals(5, handled.size());
+        for (int i = 0; i < handled.size(); i++) {
+            Assert.assertEquals(StubTrackedResourceClient.resource(i + 3), handled.get(i));
+        }
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testBaseIndexingResumed() {
+        final int members = 60;
+        final List<URI> indexed = new ArrayList<>();
+        final Set<URI> handledEvents = new HashSet<>();
+        final boolean[] failed = {false};
+        final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, members), new TestProviderHandler() {
+            @Override
+            public void handleBaseMembers(final List<BaseMember> baseMembers) {
+                if (!failed[0] && indexed.size() == 32) {
+                    failed[0] = true;
+                    throw new IllegalStateException("sink unavailable");
+                }
+                for (BaseMember baseMember : baseMembers) {
+                    indexed.add(baseMember.getUri());
+                }
+            }
+
+            @Override
+            public void handleChangeEvents(final List<ChangeEventMessageTR> eventMessages) {
+                for (ChangeEventMessageTR eventMessage : eventMessages) {
+                    handledEvents.add(eventMessage.getChangeEvent().getChanged());
+                }
+            }
+
+            @Override
+            public void rebase() {
+                Assert.fail("The indexing must resume instead of starting over");
+            }
+        }, options(4, 16));
+
+        provider.update();
+        Assert.assertEquals(32, indexed.size());
+        Assert.assertTrue(handledEvents.isEmpty());
+
+        // the next cycle picks up with the member after the last chunk handed over
+        provider.update();
+        Assert.assertEquals(members, indexed.size());
+        for (int i = 0; i < members; i++) {
+            Assert.assertEquals(StubTrackedResourceClient.member(i + 1), indexed.get(i));
+        }
+        Assert.assertEquals(EVENTS, handledEvents.size());
+        provider.update();
+        Assert.assertEquals(1, provider.getMetrics().getIdleCycles());
+    }
+
+    @Test
+    public void testShorterResumedBasePageRebases() {
+        final Path checkpoints = checkpointDirectory.getRoot().toPath().resolve("trs.wal");
+        final int members = 10;
+        final List<URI> indexed = new ArrayList<>();
+        final int[] rebases = {0};
+        try (FileCheckpointStore store = new FileCheckpointStore(checkpoints)) {
+            // the page had more members when its indexing was interrupted
+            store.save(TRS_URI, new Checkpoint(StubTrackedResourceClient.changeEvent(0), null,
+                    URI.create("https://host/base"), 32));
+            final ProviderHandlerOptions options = options(4, 16);
+            options.setCheckpointStore(store);
+            final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                    new StubTrackedResourceClient(EVENTS, members), new TestProviderHandler() {
+                @Override
+                public void handleBaseMembers(final List<BaseMember> baseMembers) {
+                    for (BaseMember baseMember : baseMembers) {
+                        indexed.add(baseMember.getUri());
+                    }
+                }
+
+                @Override
+                public void rebase() {
+                    rebases[0]++;
+                }
+            }, options);
+
+            provider.update();
+            Assert.assertEquals(1, rebases[0]);
+            Assert.assertNull(store.load(TRS_URI));
+
+            provider.update();
+            Assert.assertEquals(members, indexed.size());
+        }
+    }
+
+    @Test
+    public void testCursorSavedOnlyOnceCommitted() {
+        final Path checkpoints = checkpointDirectory.getRoot().toPath().resolve("trs.wal");
+        final List<URI> buffered = new ArrayList<>();
+        final List<URI> committed = new ArrayList<>();
+        final boolean[] failed = {false};
+        try (FileCheckpointStore store = new FileCheckpointStore(checkpoints)) {
+            store.save(TRS_URI, new Checkpoint(StubTrackedResourceClient.changeEvent(0), 0));
+            final ProviderHandlerOptions options = options(4, 16);
+            options.setCheckpointStore(store);
+            final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                    new StubTrackedResourceClient(EVENTS, 0), new TestProviderHandler() {
+                @Override
+                public void handleChangeEvents(final List<ChangeEventMessageTR> eventMessages) {
+                    for (ChangeEventMessageTR eventMessage : eventMessages) {
+                        buffered.add(eventMessage.getChangeEvent().getChanged());
+                    }
+                }
+
+                @Override
+                public void finishCycle() {
+                    if (!failed[0]) {
+                        failed[0] = true;
+                        buffered.clear();
+                        throw new IllegalStateException("sink unavailable");
+                    }
+                    committed.addAll(buffered);
+                    buffered.clear();
+                }
+            }, options);
+
+            provider.update();
+            // the chunks were handed over but not committed
+            Assert.assertTrue(committed.isEmpty());
+            Assert.assertEquals(new Checkpoint(StubTrackedResourceClient.changeEvent(0), 0),
+                    store.load(TRS_URI));
+
+            provider.update();
+            Assert.assertEquals(EVENTS, committed.size());
+            Assert.assertEquals(new Checkpoint(StubTrackedResourceClient.changeEvent(EVENTS),
+                    EVENTS), store.load(TRS_URI));
+        }
+    }
+
+    @Test
+    public void testRepeatedFailuresAtSameCursorRebase() {
+        final URI gone = StubTrackedResourceClient.resource(7);
+        final int[] rebases = {0};
+        final ProviderHandlerOptions options = options(4, 16);
+        options.setMaxFailedCycles(3);
+        final TrsProviderHandler provider = new TrsProviderHandler(TRS_URI,
+                new StubTrackedResourceClient(EVENTS, 0) {
+            @NotNull
+            @Override
+            public Model fetchTRSRemoteResource(final URI resource) {
+                if (gone.equals(resource)) {
+                    throw new RepresentationRetrievalException("410 Gone: " + resource);
+                }
+                return super.fetchTRSRemoteResource(resource);
+            }
+        }, new TestProviderHandler() {
+            @Override
+            public void rebase() {
+                rebases[0]++;
+            }
+        }, options);
+
+        provider.update();
+        provider.update();
+        Assert.assertEquals(0, rebases[0]);
+
+        // the third cycle in a row stuck on the same event gives up on the cursor
+        provider.update();
+        Assert.assertEquals(1, rebases[0]);
+    }
+
+    /**
+     * Page {@code page} of a change log paged by 3 events, oldest first, whose events have no
+     * trs:order and are listed oldest first
+     */
+    private static ChangeLog unorderedPage(final int page, final int newestEvent) {
+        final ChangeLog changeLog = new ChangeLog();
+        changeLog.setPrevious(page == 0 ? URI.create(RDF.nil.getURI())
+                : URI.create("https://host/changeLog/" + (page - 1)));
+        for (int i = page * 3; i <= Math.min(page * 3 + 2, newestEvent); i++) {
+            final Modification modification = new Modification();
+            modification.setAbout(StubTrackedResourceClient.changeEvent(i));
+            modification.setChanged(StubTrackedResourceClient.resource(i));
+            changeLog.getChange().add(modification);
+        }
+        return changeLog;
+    }
+
+    private ProviderHandlerOptions options(final int prefetchWindow, final int chunkSize) {
+        final ProviderHandlerOptions options = new ProviderHandlerOptions();
+        options.setFetchExecutor(executor);
+        options.setPrefetchWindow(prefetchWindow);
+        options.setChunkSize(chunkSize);
+        return options;
+    }
+}
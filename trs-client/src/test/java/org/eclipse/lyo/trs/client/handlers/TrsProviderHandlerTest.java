@@ -19,6 +19,7 @@ package org.eclipse.lyo.trs.client.handlers;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.apache.jena.vocabulary.RDF;
@@ -107,6 +108,32 @@ public class TrsProviderHandlerTest {
         Assert.assertFalse(ProviderUtil.changeLogContainsEvent(uri, cl_p1));
     }
 
+    @Test
+    public final void testFindEventByOrder() {
+        ChangeEvent ce = cl_p1.getChange().get(1);
+        Assert.assertSame(ce, ProviderUtil.findEvent(ce.getAbout(), ce.getOrder(), cl_p1));
+        Assert.assertNull(ProviderUtil.findEvent(ce.getAbout(), ce.getOrder() + 1, cl_p1));
+
+        int minOrder = Collections.min(cl_p1.getChange(),
+                (a, b) -> Integer.compare(a.getOrder(), b.getOrder())).getOrder();
+        Assert.assertEquals(minOrder, ProviderUtil.minOrder(cl_p1));
+        Assert.assertEquals(Integer.MAX_VALUE, ProviderUtil.minOrder(new ChangeLog()));
+    }
+
+    @Test
+    public final void testIsNewestEvent() {
+        List<ChangeEvent> changes = cl_p1.getChange();
+        ChangeEvent newest = Collections.max(changes,
+                (a, b) -> Integer.compare(a.getOrder(), b.getOrder()));
+        Assert.assertTrue(ProviderUtil.isNewestEvent(newest.getAbout(), cl_p1));
+        for (ChangeEvent ce : changes) {
+            if (ce != newest) {
+                Assert.assertFalse(ProviderUtil.isNewestEvent(ce.getAbout(), cl_p1));
+            }
+        }
+        Assert.assertFalse(ProviderUtil.isNewestEvent(newest.getAbout(), new ChangeLog()));
+    }
+
     private static String bUriPrefix = uriPrefix + "/bases";
     private static String clUriPrefix = uriPrefix + "/changeLogs";
 
@@ -164,6 +191,40 @@ public class TrsProviderHandlerTest {
 
     }
 
+    @Test
+    public final void testOptimizedChangesListAcrossPages() throws URISyntaxException {
+        String resource1 = baseMemberUri();
+        String resource2 = baseMemberUri();
+
+        Modification old1 = new Modification();
+        Modification sync = new Modification();
+        Modification first1 = new Modification();
+        Modification first2 = new Modification();
+        Modification latest1 = new Modification();
+        initChangeEvent(old1, resource1);
+        initChangeEvent(sync, resource2);
+        initChangeEvent(first1, resource1);
+        initChangeEvent(first2, resource2);
+        initChangeEvent(latest1, resource1);
+
+        // the events of a page come in no particular order
+        ChangeLog olderPage = new ChangeLog();
+        olderPage.getChange().add(first1);
+        olderPage.getChange().add(old1);
+        olderPage.getChange().add(sync);
+        ChangeLog newerPage = new ChangeLog();
+        newerPage.getChange().add(latest1);
+        newerPage.getChange().add(first2);
+
+        List<ChangeEvent> changeEventsList = ProviderUtil.optimizedChangesList(
+                Arrays.asList(newerPage, olderPage), sync.getAbout());
+
+        Assert.assertEquals(Arrays.asList(first2, latest1), changeEventsList);
+        // the pages are left as they are
+        Assert.assertEquals(Arrays.asList(first1, old1, sync), olderPage.getChange());
+        Assert.assertEquals(Arrays.asList(latest1, first2), newerPage.getChange());
+    }
+
     private String changeEventUri() {
         return ceUriPrefix + "/" + changeEventNum++;
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import java.io.StringReader;
+import java.net.URI;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.eclipse.lyo.core.trs.Modification;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GraphDeltaCacheTest {
+
+    private static final URI GRAPH = URI.create("http://host/r/1");
+    private static final Modification MODIFICATION = new Modification(
+            URI.create("http://host/ce/2"), GRAPH, 2);
+
+    @Test
+    public void testOnlyChangedTriplesAreSent() {
+        final GraphDeltaCache cache = new GraphDeltaCache();
+        cache.record(GRAPH, parse("<http://host/r/1> <http://host/p> \"a\", \"b\" ; " +
+                "<http://host/q> [ <http://host/p> \"c\" ] ."));
+
+        final String query = cache.getModificationEventQuery(MODIFICATION,
+                parse("<http://host/r/1> <http://host/p> \"a\", \"d\" ; " +
+                        "<http://host/q> [ <http://host/p> \"c\" ] ."));
+
+        Assert.assertFalse(query.contains("DROP GRAPH"));
+        Assert.assertTrue(query.startsWith("DELETE DATA"));
+        Assert.assertTrue(query.contains("\"b\""));
+        Assert.assertTrue(query.contains("INSERT DATA"));
+        Assert.assertTrue(query.contains("\"d\""));
+        Assert.assertFalse(query.contains("\"a\""));
+    }
+
+    @Test
+    public void testUnchangedRepresentationNeedsNoUpdate() {
+        final GraphDeltaCache cache = new GraphDeltaCache();
+        final String turtle = "<http://host/r/1> <http://host/p> \"a\" ; " +
+                "<http://host/q> [ <http://host/p> [ <http://host/p> \"c\" ] ] .";
+        cache.record(GRAPH, parse(turtle));
+
+        Assert.assertNull(cache.getModificationEventQuery(MODIFICATION, parse(turtle)));
+    }
+
+    @Test
+    public void testChangedBlankNodesReplaceTheGraph() {
+        final GraphDeltaCache cache = new GraphDeltaCache();
+        cache.record(GRAPH, parse("<http://host/r/1> <http://host/q> [ <http://host/p> \"c\" ] ."));
+
+        final String query = cache.getModificationEventQuery(MODIFICATION,
+                parse("<http://host/r/1> <http://host/q> [ <http://host/p> \"e\" ] ."));
+
+        Assert.assertTrue(query.startsWith("DROP GRAPH"));
+    }
+
+    @Test
+    public void testUnknownGraphIsReplaced() {
+        final GraphDeltaCache cache = new GraphDeltaCache();
+
+        final String query = cache.getModificationEventQuery(MODIFICATION,
+                parse("<http://host/r/1> <http://host/p> \"a\" ."));
+
+        Assert.assertTrue(query.startsWith("DROP GRAPH"));
+    }
+
+    private static Model parse(final String turtle) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.read(new StringReader(turtle), null, "TURTLE");
+        return model;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.eclipse.lyo.trs.client.util.SparqlConnectionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GraphStoreHandlerTest {
+
+    private HttpServer server;
+    private String endpoint;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<Model> bodies = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", exchange -> {
+            requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getQuery());
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                Assert.assertEquals("gzip",
+                        exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                final Model body = ModelFactory.createDefaultModel();
+                try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                    RDFDataMgr.read(body, in, Lang.NTRIPLES);
+                }
+                bodies.add(body);
+                exchange.sendResponseHeaders(201, -1);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort() + "/data";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testPutAndDeleteGraphs() {
+        final URI resource = URI.create("http://host/r/1");
+        final Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(resource.toString()),
+                model.createProperty("http://host/p"), "o \"quoted\"");
+
+        try (SparqlConnectionManager manager = new SparqlConnectionManager()) {
+            final GraphStoreHandler handler = new GraphStoreHandler(endpoint, null, null,
+                    RDFFormat.NTRIPLES_UTF8, true, manager);
+            handler.handleBaseMember(new BaseMember(resource, model));
+            final Deletion deletion = new Deletion(URI.create("http://host/ce/1"), resource, 1);
+            handler.handleChangeEvent(new ChangeEventMessageTR(deletion, null));
+        }
+
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals("PUT graph=http://host/r/1", requests.get(0));
+        Assert.assertEquals("DELETE graph=http://host/r/1", requests.get(1));
+        Assert.assertTrue(bodies.get(0).isIsomorphicWith(model));
+    }
+}
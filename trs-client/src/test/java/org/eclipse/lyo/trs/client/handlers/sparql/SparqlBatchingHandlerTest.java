@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SparqlBatchingHandlerTest {
+
+    @Test
+    public void testBatchesAreBoundedBySize() {
+        final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(requests::add, 3,
+                Long.MAX_VALUE, Long.MAX_VALUE, 2);
+
+        for (int i = 0; i < 7; i++) {
+            handler.commit("INSERT DATA { <urn:s> <urn:p> " + i + " }");
+        }
+        handler.finishCycle();
+
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(7, requests.stream()
+                .mapToInt(r -> r.split("; \n").length).sum());
+    }
+
+    @Test
+    public void testFailingOperationIsIsolated() {
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(request -> {
+            if (request.contains("BAD")) {
+                throw new HttpException(400, "Bad Request", null);
+            }
+            applied.addAll(Arrays.asList(request.split("; \n")));
+        }, 8, Long.MAX_VALUE, Long.MAX_VALUE, 1);
+
+        for (int i = 0; i < 8; i++) {
+            handler.commit(i == 5 ? "BAD" : "op" + i);
+        }
+        handler.finishCycle();
+
+        Assert.assertEquals(1, handler.getFailedOperations());
+        Assert.assertEquals(7, applied.size());
+        Assert.assertFalse(applied.contains("BAD"));
+    }
+
+    @Test
+    public void testServerErrorFailsTheCycle() {
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(request -> {
+            throw new HttpException(503, "Service Unavailable", null);
+        }, 2, Long.MAX_VALUE, Long.MAX_VALUE, 2);
+
+        for (int i = 0; i < 8; i++) {
+            handler.commit("op" + i);
+        }
+        try {
+            handler.finishCycle();
+            Assert.fail("The updates must not be dropped silently");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, handler.getFailedOperations());
+        }
+    }
+
+    @Test
+    public void testModificationReplayedAfterServerError() {
+        final URI graph = URI.create("https://host/r/1");
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final boolean[] failing = {false};
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(request -> {
+            if (failing[0]) {
+                throw new HttpException(503, "Service Unavailable", null);
+            }
+            applied.add(request);
+        }, 8, Long.MAX_VALUE, Long.MAX_VALUE, 1);
+        handler.setDeltaCache(new GraphDeltaCache());
+
+        handler.commit(handler.prepareBaseMember(new BaseMember(graph, model(graph, "v1"))));
+        handler.finishCycle();
+
+        final Modification modification = new Modification();
+        modification.setAbout(URI.create("https://host/ce/1"));
+        modification.setChanged(graph);
+        modification.setOrder(1);
+        final ChangeEventMessageTR eventMessage = new ChangeEventMessageTR(modification,
+                model(graph, "v2"));
+        failing[0] = true;
+        handler.commit(handler.prepareChangeEvent(eventMessage));
+        try {
+            handler.finishCycle();
+            Assert.fail("The updates must not be dropped silently");
+        } catch (IllegalStateException e) {
+            // the cursor goes back and the modification is replayed
+        }
+
+        failing[0] = false;
+        final String replayed = handler.prepareChangeEvent(eventMessage);
+        Assert.assertNotNull("The replayed modification must still reach the store", replayed);
+        handler.commit(replayed);
+        handler.finishCycle();
+        Assert.assertEquals(2, applied.size());
+        Assert.assertTrue(applied.get(1).contains("v2"));
+    }
+
+    @Test
+    public void testBatchesAreSentInOrder() {
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(
+                request -> applied.addAll(Arrays.asList(request.split("; \n"))), 3,
+                Long.MAX_VALUE, Long.MAX_VALUE, 4);
+
+        for (int i = 0; i < 100; i++) {
+            handler.commit("op" + i);
+        }
+        handler.finishCycle();
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("op" + i, applied.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws InterruptedException {
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final SparqlBatchingHandler handler = new SparqlBatchingHandler(
+                request -> applied.addAll(Arrays.asList(request.split("; \n"))), 50,
+                Long.MAX_VALUE, Long.MAX_VALUE, 4);
+
+        final ExecutorService producers = Executors.newFixedThreadPool(64);
+        for (int i = 0; i < 10_000; i++) {
+            final String operation = "op" + i;
+            producers.execute(() -> handler.commit(operation));
+        }
+        producers.shutdown();
+        Assert.assertTrue(producers.awaitTermination(30, TimeUnit.SECONDS));
+        handler.finishCycle();
+
+        Assert.assertEquals(10_000, applied.size());
+        Assert.assertEquals(10_000, applied.stream().distinct().count());
+    }
+
+    private static Model model(final URI graph, final String title) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.createResource(graph.toString()).addProperty(DCTerms.title, title);
+        return model;
+    }
+}
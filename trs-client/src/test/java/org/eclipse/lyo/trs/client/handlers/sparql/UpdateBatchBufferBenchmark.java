@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.sparql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link UpdateBatchBuffer} with a lock around an {@code ArrayList}, the way the
+ * batch was accumulated before, with 64 producers committing at once. Run with {@code main()}
+ * from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class UpdateBatchBufferBenchmark {
+
+    private static final int MAX_OPERATIONS = 1000;
+    private static final String OPERATION =
+            "INSERT DATA { GRAPH <https://host/r/1> { <https://host/r/1> <urn:p> \"o\" } }";
+
+    private final UpdateBatchBuffer buffer = new UpdateBatchBuffer(MAX_OPERATIONS,
+            Long.MAX_VALUE, Long.MAX_VALUE);
+    private List<String> locked = new ArrayList<>();
+
+    @Benchmark
+    public List<String> lockFreeBuffer() {
+        if (buffer.add(OPERATION)) {
+            return buffer.takeFullBatch();
+        }
+        return null;
+    }
+
+    @Benchmark
+    public List<String> synchronizedList() {
+        synchronized (this) {
+            locked.add(OPERATION);
+            if (locked.size() >= MAX_OPERATIONS) {
+                final List<String> batch = locked;
+                locked = new ArrayList<>();
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UpdateBatchBufferBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
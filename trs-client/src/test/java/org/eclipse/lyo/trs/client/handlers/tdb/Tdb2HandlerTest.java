@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.handlers.tdb;
+
+import java.net.URI;
+import java.util.Iterator;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.trs.client.model.BaseMember;
+import org.eclipse.lyo.trs.client.model.ChangeEventMessageTR;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Tdb2HandlerTest {
+
+    @Test
+    public void testBaseThenChanges() {
+        final Dataset dataset = TDB2Factory.createDataset();
+        final Tdb2Handler handler = new Tdb2Handler(dataset, 2);
+
+        for (int i = 0; i < 5; i++) {
+            handler.handleBaseMember(new BaseMember(resource(i), model(i, "v1")));
+        }
+        handler.finishCycle();
+        Assert.assertEquals(5, graphCount(dataset));
+
+        handler.handleChangeEvent(new ChangeEventMessageTR(
+                new Modification(URI.create("http://host/ce/1"), resource(1), 1),
+                model(1, "v2")));
+        handler.handleChangeEvent(new ChangeEventMessageTR(
+                new Deletion(URI.create("http://host/ce/2"), resource(2), 2), null));
+        handler.finishCycle();
+
+        Assert.assertEquals(4, graphCount(dataset));
+        Txn.executeRead(dataset, () -> {
+            final Model graph = dataset.getNamedModel(resource(1).toString());
+            Assert.assertEquals(1, graph.size());
+            Assert.assertTrue(graph.contains(null, null, "v2"));
+        });
+    }
+
+    @Test
+    public void testBaseBulkLoadedAcrossPages() {
+        final Dataset dataset = TDB2Factory.createDataset();
+        final Tdb2Handler handler = new Tdb2Handler(dataset, 2);
+
+        // one cycle per base page
+        for (int page = 0; page < 3; page++) {
+            for (int i = page * 3; i < page * 3 + 3; i++) {
+                handler.handleBaseMember(new BaseMember(resource(i), model(i, "v1")));
+            }
+            handler.finishCycle();
+        }
+        Assert.assertEquals(9, graphCount(dataset));
+        Assert.assertEquals(9, handler.getBulkLoadedGraphs());
+
+        handler.handleChangeEvent(new ChangeEventMessageTR(
+                new Modification(URI.create("http://host/ce/1"), resource(1), 1),
+                model(1, "v2")));
+        handler.finishCycle();
+
+        Assert.assertEquals(9, handler.getBulkLoadedGraphs());
+        Txn.executeRead(dataset, () -> {
+            final Model graph = dataset.getNamedModel(resource(1).toString());
+            Assert.assertEquals(1, graph.size());
+            Assert.assertTrue(graph.contains(null, null, "v2"));
+        });
+    }
+
+    private static long graphCount(final Dataset dataset) {
+        return Txn.calculateRead(dataset, () -> {
+            long count = 0;
+            for (Iterator<String> it = dataset.listNames(); it.hasNext(); it.next()) {
+                count++;
+            }
+            return count;
+        });
+    }
+
+    private static URI resource(final int i) {
+        return URI.create("http://host/r/" + i);
+    }
+
+    private static Model model(final int i, final String value) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(resource(i).toString()),
+                model.createProperty("http://host/p"), value);
+        return model;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.jena.rdf.model.Model;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.RepresentationRetrievalException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncTrackedResourceClientTest {
+
+    private static final String TRS = "@prefix trs: <http://open-services.net/ns/core/trs#> .\n" +
+            "<http://localhost/trs> a trs:TrackedResourceSet ;\n" +
+            "  trs:base <http://localhost/base> ;\n" +
+            "  trs:changeLog [ a trs:ChangeLog ; trs:change <http://localhost/ce/1> ] .\n" +
+            "<http://localhost/ce/1> a trs:Creation ; trs:changed <http://localhost/r/1> ;\n" +
+            "  trs:order 1 .\n";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String serverUri;
+    private AsyncTrackedResourceClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/trs", exchange -> {
+            final byte[] body = TRS.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/turtle");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+        server.start();
+        serverUri = "http://localhost:" + server.getAddress().getPort();
+        client = new AsyncTrackedResourceClient(HttpAsyncClients.createDefault());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentFetches() {
+        final List<CompletableFuture<Model>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(client.fetchTRSRemoteResource(URI.create(serverUri + "/trs")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (CompletableFuture<Model> future : futures) {
+            Assert.assertFalse(future.join().isEmpty());
+        }
+    }
+
+    @Test
+    public void testBlockingAdapter() {
+        final BlockingTrackedResourceClient blockingClient = new BlockingTrackedResourceClient(
+                client);
+
+        final TrackedResourceSet trs = blockingClient.extractRemoteTrs(URI.create(serverUri + "/trs"));
+
+        Assert.assertEquals(URI.create("http://localhost/base"), trs.getBase());
+        Assert.assertEquals(1, trs.getChangeLog().getChange().size());
+    }
+
+    @Test(expected = RepresentationRetrievalException.class)
+    public void testBlockingAdapterRethrowsFailure() {
+        final BlockingTrackedResourceClient blockingClient = new BlockingTrackedResourceClient(
+                client);
+
+        blockingClient.fetchTRSRemoteResource(URI.create(serverUri + "/missing"));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.StringReader;
+import java.net.URI;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BasePageReaderTest {
+
+    private static final String PREFIXES = "@prefix trs: <http://open-services.net/ns/core/trs#> .\n" +
+            "@prefix ldp: <http://www.w3.org/ns/ldp#> .\n" +
+            "@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .\n" +
+            "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n";
+
+    @Test
+    public void testReadPage() {
+        final BasePage page = read("<https://host/base> trs:cutoffEvent <https://host/ce/7> ;\n" +
+                "  rdfs:member <https://host/r/1>, <https://host/r/2> ;\n" +
+                "  ldp:member <https://host/r/3> .\n" +
+                "<https://host/base?page=1> a ldp:Page ; ldp:pageOf <https://host/base> ;\n" +
+                "  ldp:nextPage <https://host/base?page=2> .\n");
+
+        Assert.assertEquals(URI.create("https://host/ce/7"), page.getCutoffEvent());
+        Assert.assertEquals(3, page.getMembers().size());
+        Assert.assertTrue(page.getMembers().contains(URI.create("https://host/r/3")));
+        Assert.assertEquals(URI.create("https://host/base?page=2"), page.getNextPage());
+    }
+
+    @Test
+    public void testLastPage() {
+        final BasePage page = read("<https://host/base> rdfs:member <https://host/r/1> .\n" +
+                "<https://host/base?page=2> ldp:nextPage rdf:nil .\n");
+
+        Assert.assertNull(page.getNextPage());
+        Assert.assertNull(page.getCutoffEvent());
+    }
+
+    private static BasePage read(final String turtle) {
+        final BasePageReader reader = new BasePageReader();
+        RDFDataMgr.parse(reader, new StringReader(PREFIXES + turtle), null, Lang.TURTLE);
+        return reader.getBasePage(URI.create("https://host/base"));
+    }
+}
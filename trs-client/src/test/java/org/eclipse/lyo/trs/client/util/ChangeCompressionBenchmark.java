@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Modification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link ProviderUtil#optimizedChangesList(List, URI)} with the previous
+ * reverse-sort-merge-sort compression on a change log of pages of 100 events in no particular
+ * order, where every resource is changed 4 times. Run with {@code main()} from the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeCompressionBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int events;
+
+    /**
+     * Newest page first, as fetched by the provider handlers
+     */
+    private List<ChangeLog> changeLogs;
+    private URI syncPoint;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final URI[] resources = new URI[events / 4];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = URI.create("https://host/r/" + i);
+        }
+        changeLogs = new ArrayList<>();
+        for (int start = 0; start < events; start += PAGE_SIZE) {
+            final List<ChangeEvent> page = new ArrayList<>(PAGE_SIZE);
+            for (int i = start; i < Math.min(start + PAGE_SIZE, events); i++) {
+                final Modification modification = new Modification();
+                modification.setAbout(URI.create("https://host/ce/" + i));
+                modification.setChanged(resources[i % resources.length]);
+                modification.setOrder(i);
+                page.add(modification);
+            }
+            Collections.shuffle(page, random);
+            final ChangeLog changeLog = new ChangeLog();
+            changeLog.setChange(page);
+            changeLogs.add(0, changeLog);
+        }
+        syncPoint = URI.create("https://host/ce/0");
+    }
+
+    @Benchmark
+    public List<ChangeEvent> singlePass() {
+        return ProviderUtil.optimizedChangesList(changeLogs, syncPoint);
+    }
+
+    /**
+     * The previous implementation modified the pages, so it runs on copies of them.
+     */
+    @Benchmark
+    public List<ChangeEvent> sortAndMerge() {
+        final List<ChangeLog> copies = new ArrayList<>(changeLogs.size());
+        for (ChangeLog changeLog : changeLogs) {
+            final ChangeLog copy = new ChangeLog();
+            copy.setChange(new ArrayList<>(changeLog.getChange()));
+            copies.add(copy);
+        }
+        Collections.reverse(copies);
+
+        final ChangeLog firstChangeLog = copies.get(0);
+        List<ChangeEvent> firstChangelogEvents = firstChangeLog.getChange();
+        firstChangelogEvents.sort(Comparator.comparing(ChangeEvent::getOrder));
+        int indexOfSync = -1;
+        for (ChangeEvent changeEvent : firstChangelogEvents) {
+            if (changeEvent.getAbout().equals(syncPoint)) {
+                indexOfSync = firstChangelogEvents.indexOf(changeEvent);
+                break;
+            }
+        }
+        firstChangeLog.setChange(firstChangelogEvents.subList(indexOfSync + 1,
+                firstChangelogEvents.size()));
+
+        final List<ChangeEvent> changesToProcess = new ArrayList<>();
+        for (ChangeLog changeLog : copies) {
+            changesToProcess.addAll(changeLog.getChange());
+        }
+        changesToProcess.sort(Comparator.comparing(ChangeEvent::getOrder));
+
+        final Map<URI, ChangeEvent> resToChangeEventMap = new HashMap<>();
+        for (ChangeEvent changeToProcess : changesToProcess) {
+            resToChangeEventMap.put(changeToProcess.getChanged(), changeToProcess);
+        }
+        final List<ChangeEvent> reducedChangesList = new ArrayList<>(
+                resToChangeEventMap.values());
+        reducedChangesList.sort(Comparator.comparing(ChangeEvent::getOrder));
+        return reducedChangesList;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChangeCompressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
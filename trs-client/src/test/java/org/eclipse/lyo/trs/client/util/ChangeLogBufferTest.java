@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChangeLogBufferTest {
+
+    @Rule
+    public final TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    @Test
+    public void testSmallChangeLogStaysInMemory() {
+        final ChangeLog page = page(event(new Creation(), 1, 1));
+        try (ChangeLogBuffer buffer = new ChangeLogBuffer(spillDirectory.getRoot().toPath(), 4)) {
+            buffer.add(page);
+
+            Assert.assertFalse(buffer.isSpilled());
+            Assert.assertEquals(Collections.singletonList(page), buffer.getPages());
+        }
+        Assert.assertEquals(0, spillDirectory.getRoot().list().length);
+    }
+
+    @Test
+    public void testSpilledChangeLogReplayedOldestFirst() {
+        final List<List<ChangeEvent>> windows = new ArrayList<>();
+        try (ChangeLogBuffer buffer = new ChangeLogBuffer(spillDirectory.getRoot().toPath(), 3)) {
+            // newest page first, events within a page in no particular order
+            buffer.add(page(event(new Deletion(), 7, 1), event(new Modification(), 6, 3)));
+            buffer.add(page(event(new Modification(), 5, 2), event(new Modification(), 3, 1),
+                    event(new Creation(), 4, 3)));
+            buffer.add(page(event(new Creation(), 2, 2), event(new Creation(), 1, 1)));
+
+            Assert.assertTrue(buffer.isSpilled());
+            Assert.assertEquals(7, buffer.getEvents());
+            Assert.assertEquals(1, spillDirectory.getRoot().list().length);
+
+            buffer.replay(URI.create("https://host/ce/1"), 1, windows::add);
+        }
+
+        // 2..4 and 5..7, each window compressed on its own
+        Assert.assertEquals(2, windows.size());
+        Assert.assertEquals(Arrays.asList(2, 3, 4), orders(windows.get(0)));
+        Assert.assertEquals(Arrays.asList(5, 6, 7), orders(windows.get(1)));
+        final ChangeEvent last = windows.get(1).get(2);
+        Assert.assertTrue(last instanceof Deletion);
+        Assert.assertEquals(URI.create("https://host/ce/7"), last.getAbout());
+        Assert.assertEquals(URI.create("https://host/r/1"), last.getChanged());
+        Assert.assertEquals(0, spillDirectory.getRoot().list().length);
+    }
+
+    private static ChangeEvent event(final ChangeEvent changeEvent, final int order,
+            final int resource) {
+        changeEvent.setAbout(URI.create("https://host/ce/" + order));
+        changeEvent.setChanged(URI.create("https://host/r/" + resource));
+        changeEvent.setOrder(order);
+        return changeEvent;
+    }
+
+    private static ChangeLog page(final ChangeEvent... changeEvents) {
+        final ChangeLog changeLog = new ChangeLog();
+        changeLog.setChange(new ArrayList<>(Arrays.asList(changeEvents)));
+        return changeLog;
+    }
+
+    private static List<Integer> orders(final List<ChangeEvent> changeEvents) {
+        final List<Integer> orders = new ArrayList<>();
+        for (ChangeEvent changeEvent : changeEvents) {
+            orders.add(changeEvent.getOrder());
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.oslc4j.provider.jena.JenaModelHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link ChangeLogReader} with the previous {@code JenaModelHelper} based extraction
+ * of a change log page. Run with {@code main()} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeLogReaderBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int events;
+
+    private byte[] page;
+    private Model model;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("@prefix trs: <http://open-services.net/ns/core/trs#> .\n");
+        sb.append("<https://host/changeLog/0> a trs:ChangeLog ;\n");
+        sb.append("  trs:previous <https://host/changeLog/1> .\n");
+        final String[] types = {"trs:Creation", "trs:Modification", "trs:Deletion"};
+        for (int i = 0; i < events; i++) {
+            sb.append("<https://host/changeLog/0> trs:change <https://host/ce/").append(i)
+                    .append("> .\n");
+            sb.append("<https://host/ce/").append(i).append("> a ").append(types[i % 3])
+                    .append(" ; trs:changed <https://host/r/").append(i / 3)
+                    .append("> ; trs:order ").append(i).append(" .\n");
+        }
+        page = sb.toString().getBytes(StandardCharsets.UTF_8);
+        model = parse();
+    }
+
+    @Benchmark
+    public ChangeLog jenaModelHelper() {
+        return unmarshal(model);
+    }
+
+    @Benchmark
+    public ChangeLog changeLogReader() {
+        return ChangeLogReader.fromModel(model).getChangeLog();
+    }
+
+    @Benchmark
+    public ChangeLog parseAndUnmarshal() {
+        return unmarshal(parse());
+    }
+
+    @Benchmark
+    public ChangeLog parseStreaming() {
+        final ChangeLogReader reader = new ChangeLogReader();
+        RDFDataMgr.parse(reader, new ByteArrayInputStream(page), null, Lang.TURTLE);
+        return reader.getChangeLog();
+    }
+
+    private Model parse() {
+        final Model m = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(m, new ByteArrayInputStream(page), null, Lang.TURTLE);
+        return m;
+    }
+
+    /**
+     * The extraction as it was done before {@link ChangeLogReader}.
+     */
+    private static ChangeLog unmarshal(final Model rdFModel) {
+        try {
+            final ChangeLog changeLog = JenaModelHelper.unmarshal(rdFModel, ChangeLog.class)[0];
+            changeLog.getChange().clear();
+            changeLog.getChange().addAll(
+                    Arrays.asList(JenaModelHelper.unmarshal(rdFModel, Modification.class)));
+            changeLog.getChange().addAll(
+                    Arrays.asList(JenaModelHelper.unmarshal(rdFModel, Creation.class)));
+            changeLog.getChange().addAll(
+                    Arrays.asList(JenaModelHelper.unmarshal(rdFModel, Deletion.class)));
+            return changeLog;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChangeLogReaderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
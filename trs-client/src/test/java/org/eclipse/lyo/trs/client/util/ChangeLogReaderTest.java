@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.StringReader;
+import java.net.URI;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.exceptions.TrsEndpointErrorException;
+import org.eclipse.lyo.oslc4j.provider.jena.JenaModelHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChangeLogReaderTest {
+
+    private static final String TRS_PAGE = "@prefix trs: <http://open-services.net/ns/core/trs#> .\n" +
+            "@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .\n" +
+            "<https://host/trs> a trs:TrackedResourceSet ;\n" +
+            "  trs:base <https://host/base> ;\n" +
+            "  trs:changeLog [\n" +
+            "    a trs:ChangeLog ;\n" +
+            "    trs:previous <https://host/changeLog/1> ;\n" +
+            "    trs:change <https://host/ce/3>, <https://host/ce/2>, <https://host/ce/1>\n" +
+            "  ] .\n" +
+            "<https://host/ce/1> a trs:Creation ; trs:changed <https://host/r/1> ; trs:order 1 .\n" +
+            "<https://host/ce/2> a trs:Modification ; trs:changed <https://host/r/1> ; trs:order 2 .\n" +
+            "<https://host/ce/3> a trs:Deletion ; trs:changed <https://host/r/2> ; trs:order 3 .\n";
+
+    @Test
+    public void testReadTrackedResourceSet() {
+        final TrackedResourceSet trs = ChangeLogReader.fromModel(page()).getTrackedResourceSet();
+
+        Assert.assertEquals(URI.create("https://host/trs"), trs.getAbout());
+        Assert.assertEquals(URI.create("https://host/base"), trs.getBase());
+
+        final ChangeLog changeLog = trs.getChangeLog();
+        Assert.assertEquals(URI.create("https://host/changeLog/1"), changeLog.getPrevious());
+
+        final List<ChangeEvent> changes = changeLog.getChange();
+        changes.sort(Comparator.comparing(ChangeEvent::getOrder));
+        Assert.assertEquals(3, changes.size());
+        Assert.assertTrue(changes.get(0) instanceof Creation);
+        Assert.assertTrue(changes.get(1) instanceof Modification);
+        Assert.assertTrue(changes.get(2) instanceof Deletion);
+        Assert.assertEquals(URI.create("https://host/ce/2"), changes.get(1).getAbout());
+        Assert.assertEquals(URI.create("https://host/r/1"), changes.get(1).getChanged());
+        Assert.assertEquals(2, changes.get(1).getOrder());
+    }
+
+    @Test
+    public void testSameEventsAsJenaModelHelper() throws Exception {
+        final Model model = page();
+        final ChangeLog changeLog = ChangeLogReader.fromModel(model).getChangeLog();
+
+        final Modification[] modifications = JenaModelHelper.unmarshal(model,
+                Modification.class);
+        final Creation[] creations = JenaModelHelper.unmarshal(model, Creation.class);
+        final Deletion[] deletions = JenaModelHelper.unmarshal(model, Deletion.class);
+
+        Assert.assertEquals(modifications.length + creations.length + deletions.length,
+                changeLog.getChange().size());
+        for (ChangeEvent event : changeLog.getChange()) {
+            Assert.assertTrue(contains(modifications, event) || contains(creations, event) ||
+                    contains(deletions, event));
+        }
+    }
+
+    @Test
+    public void testMissingChangeLog() {
+        final Model model = page();
+        model.removeAll(null, RDF.type, model.createResource(
+                "http://open-services.net/ns/core/trs#ChangeLog"));
+
+        final ChangeLog changeLog = ChangeLogReader.fromModel(model).getChangeLog();
+
+        Assert.assertTrue(changeLog.getChange().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingTrackedResourceSet() {
+        ChangeLogReader.fromModel(ModelFactory.createDefaultModel()).getTrackedResourceSet();
+    }
+
+    @Test
+    public void testInvalidOrder() {
+        for (String order : new String[]{"\"x\"^^<http://www.w3.org/2001/XMLSchema#integer>",
+                "9999999999"}) {
+            final Model model = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(model, new StringReader(TRS_PAGE.replace("trs:order 3", "trs:order " +
+                    order)), null, Lang.TURTLE);
+            try {
+                ChangeLogReader.fromModel(model).getChangeLog();
+                Assert.fail("trs:order " + order + " must be rejected");
+            } catch (TrsEndpointErrorException e) {
+                Assert.assertTrue(e.getMessage().contains("https://host/ce/3"));
+            }
+        }
+    }
+
+    private static boolean contains(final ChangeEvent[] events, final ChangeEvent event) {
+        for (ChangeEvent e : events) {
+            if (e.getClass().equals(event.getClass()) && e.getAbout().equals(event.getAbout()) &&
+                    e.getChanged().equals(event.getChanged()) && e.getOrder() == event.getOrder()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Model page() {
+        final Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new StringReader(TRS_PAGE), null, Lang.TURTLE);
+        return model;
+    }
+}
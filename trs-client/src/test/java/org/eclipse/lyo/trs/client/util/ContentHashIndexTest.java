@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentHashIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSavesAppendOnlyTheChanges() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("hashes.idx");
+        final ContentHashIndex index = new ContentHashIndex(file);
+        for (int page = 0; page < 10; page++) {
+            for (int i = 0; i < 10; i++) {
+                index.put(resource(page * 10 + i), hash(page * 10 + i));
+            }
+            index.save();
+        }
+        index.remove(resource(0));
+        index.put(resource(1), hash(1000));
+        index.save();
+
+        Assert.assertEquals(102, Files.readAllLines(file).size());
+        final ContentHashIndex reloaded = new ContentHashIndex(file);
+        Assert.assertEquals(99, reloaded.size());
+        Assert.assertNull(reloaded.get(resource(0)));
+        Assert.assertEquals(hash(1000), reloaded.get(resource(1)));
+        Assert.assertEquals(hash(99), reloaded.get(resource(99)));
+        // compacted on open
+        Assert.assertEquals(99, Files.readAllLines(file).size());
+    }
+
+    @Test
+    public void testCompactedOnceMostlyOverwritten() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("hashes.idx");
+        final ContentHashIndex index = new ContentHashIndex(file, 4);
+        index.put(resource(1), hash(1));
+        index.put(resource(2), hash(2));
+        index.save();
+        for (int i = 0; i < 10; i++) {
+            index.put(resource(1), hash(100 + i));
+            index.save();
+        }
+
+        Assert.assertTrue(Files.readAllLines(file).size() <= 4);
+        Assert.assertEquals(hash(109), new ContentHashIndex(file).get(resource(1)));
+    }
+
+    @Test
+    public void testTornLineIgnored() throws IOException {
+        final Path file = folder.getRoot().toPath().resolve("hashes.idx");
+        final ContentHashIndex index = new ContentHashIndex(file);
+        index.put(resource(1), hash(1));
+        index.save();
+        Files.write(file, (hash(2) + " http://host/r/").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final ContentHashIndex reloaded = new ContentHashIndex(file);
+        Assert.assertEquals(1, reloaded.size());
+        reloaded.put(resource(2), hash(2));
+        reloaded.save();
+        Assert.assertEquals(2, new ContentHashIndex(file).size());
+    }
+
+    private static URI resource(final int i) {
+        return URI.create("http://host/r/" + i);
+    }
+
+    private static HashCode hash(final int i) {
+        return HashCode.fromInt(i);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.eclipse.lyo.core.trs.Base;
+import org.eclipse.lyo.core.trs.ChangeLog;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.trs.client.model.BasePage;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HostThrottledTrackedResourceClientTest {
+
+    @Test
+    public void testPerHostLimit() throws InterruptedException {
+        final SlowClient slowClient = new SlowClient();
+        final HostThrottledTrackedResourceClient client = new HostThrottledTrackedResourceClient(
+                slowClient, 2);
+        final ExecutorService executor = TrsConsumerUtils.virtualThreadFetchExecutor(64, 16);
+        final CountDownLatch done = new CountDownLatch(40);
+
+        for (int i = 0; i < 20; i++) {
+            final URI a = URI.create("http://a.example/r/" + i);
+            final URI b = URI.create("http://b.example/r/" + i);
+            executor.execute(() -> {
+                client.fetchTRSRemoteResource(a);
+                done.countDown();
+            });
+            executor.execute(() -> {
+                client.fetchTRSRemoteResource(b);
+                done.countDown();
+            });
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertTrue(slowClient.maxInFlight("a.example") <= 2);
+        Assert.assertTrue(slowClient.maxInFlight("b.example") <= 2);
+    }
+
+    /**
+     * Records the max number of concurrent requests per host.
+     */
+    private static class SlowClient implements ITrackedResourceClient {
+        private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, AtomicInteger> maxInFlight =
+                new ConcurrentHashMap<>();
+
+        int maxInFlight(final String host) {
+            return maxInFlight.get(host).get();
+        }
+
+        @NotNull
+        @Override
+        public Model fetchTRSRemoteResource(final URI resource) {
+            final String host = resource.getHost();
+            final int current = inFlight.computeIfAbsent(host, h -> new AtomicInteger())
+                    .incrementAndGet();
+            maxInFlight.computeIfAbsent(host, h -> new AtomicInteger())
+                    .accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.get(host).decrementAndGet();
+            return ModelFactory.createDefaultModel();
+        }
+
+        @Override
+        public List<Base> updateBases(final TrackedResourceSet updatedTrs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TrackedResourceSet extractRemoteTrs(final URI trsUri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChangeLog fetchRemoteChangeLog(final URI changeLogURl) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Base fetchRemoteBase(final URI baseUrl) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BasePage fetchRemoteBasePage(final URI basePageUri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<BasePage> fetchRemoteBasePages(final URI firstBasePageUri) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.update.UpdateFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SparqlConnectionManagerTest {
+
+    private HttpServer server;
+    private String endpoint;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final Set<String> authorizations = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/update", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                while (body.read() != -1) {
+                    // drain the request so that the connection can be reused
+                }
+            }
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization != null) {
+                authorizations.add(authorization);
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        endpoint = "http://localhost:" + server.getAddress().getPort() + "/update";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testConnectionsAreReused() {
+        try (SparqlConnectionManager manager = new SparqlConnectionManager()) {
+            for (int i = 0; i < 5; i++) {
+                manager.update(endpoint, null, null, "CREATE GRAPH <urn:g" + i + ">");
+                manager.post(endpoint, null, null, "CLEAR GRAPH <urn:g" + i + ">");
+                manager.update(endpoint, UpdateFactory.create("DROP GRAPH <urn:g" + i + ">"));
+            }
+
+            Assert.assertEquals(15, requests.get());
+            Assert.assertEquals(15, manager.getUpdates());
+            Assert.assertEquals(0, manager.getSaturatedUpdates());
+            Assert.assertEquals(0, manager.getLeasedConnections());
+            Assert.assertEquals(1, clientPorts.size());
+        }
+    }
+
+    @Test
+    public void testChangedPasswordIsUsed() {
+        try (SparqlConnectionManager manager = new SparqlConnectionManager()) {
+            manager.update(endpoint, "user", "old", "CREATE GRAPH <urn:g>");
+            manager.update(endpoint, "user", "new", "DROP GRAPH <urn:g>");
+            Assert.assertEquals(2, authorizations.size());
+
+            manager.post(endpoint, "user", "newer", "CREATE GRAPH <urn:g>");
+            manager.post(endpoint, "user", "newest", "DROP GRAPH <urn:g>");
+            Assert.assertEquals(4, authorizations.size());
+        }
+    }
+}
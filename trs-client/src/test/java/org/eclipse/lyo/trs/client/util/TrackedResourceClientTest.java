@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.lyo.core.trs.TrackedResourceSet;
+import org.eclipse.lyo.oslc4j.client.OslcClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackedResourceClientTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String TRS = "@prefix trs: <http://open-services.net/ns/core/trs#> .\n" +
+            "<http://localhost/trs> a trs:TrackedResourceSet ;\n" +
+            "  trs:base <http://localhost/base> ;\n" +
+            "  trs:changeLog [ a trs:ChangeLog ; trs:change <http://localhost/ce/1> ] .\n" +
+            "<http://localhost/ce/1> a trs:Creation ; trs:changed <http://localhost/r/1> ;\n" +
+            "  trs:order 1 .\n";
+
+    private HttpServer server;
+    private URI trsUri;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final Set<String> acceptHeaders = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/trs");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/trs", exchange -> {
+            acceptHeaders.add(exchange.getRequestHeaders().getFirst("Accept"));
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                final byte[] body = TRS.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/turtle");
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        trsUri = URI.create("http://localhost:" + server.getAddress().getPort() + "/trs");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testNotModifiedReusesTrs() {
+        final TrackedResourceClient client = new TrackedResourceClient(new OslcClient());
+
+        final TrackedResourceSet first = client.extractRemoteTrs(trsUri);
+        // pollers cut the change list in place; the cached copy must not be affected
+        first.getChangeLog().getChange().clear();
+        final TrackedResourceSet second = client.extractRemoteTrs(trsUri);
+
+        Assert.assertEquals(1, fullResponses.get());
+        Assert.assertEquals(1, notModifiedResponses.get());
+        Assert.assertEquals(URI.create("http://localhost/base"), second.getBase());
+        Assert.assertEquals(1, second.getChangeLog().getChange().size());
+    }
+
+    @Test
+    public void testValidatorCacheDisabled() {
+        final TrackedResourceClient client = new TrackedResourceClient(new OslcClient(), 0);
+
+        client.extractRemoteTrs(trsUri);
+        client.extractRemoteTrs(trsUri);
+
+        Assert.assertEquals(2, fullResponses.get());
+        Assert.assertEquals(0, notModifiedResponses.get());
+    }
+
+    @Test
+    public void testRedirectedTrsNotModified() {
+        final TrackedResourceClient client = new TrackedResourceClient(new OslcClient());
+        final URI movedUri = trsUri.resolve("/moved");
+
+        client.extractRemoteTrs(movedUri);
+        final TrackedResourceSet second = client.extractRemoteTrs(movedUri);
+
+        Assert.assertEquals(1, fullResponses.get());
+        Assert.assertEquals(1, notModifiedResponses.get());
+        Assert.assertEquals(URI.create("http://localhost/base"), second.getBase());
+        // the conditional request negotiates the same variant as the first one
+        Assert.assertEquals(1, acceptHeaders.size());
+    }
+}
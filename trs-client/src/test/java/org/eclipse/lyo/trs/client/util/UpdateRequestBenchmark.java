@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.eclipse.lyo.core.trs.Modification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares building the update of a modification as text and parsing it back, as
+ * {@code SparqlUtil.processQuery} did, with the {@link UpdateRequestBuilder}. Both end with the
+ * serialisation that is sent to the endpoint. Run with {@code main()} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateRequestBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int triples;
+
+    private Model model;
+    private Modification modification;
+
+    @Setup
+    public void setUp() {
+        model = ModelFactory.createDefaultModel();
+        final Resource resource = model.createResource("https://host/r/1");
+        for (int i = 0; i < triples; i++) {
+            resource.addProperty(model.createProperty("https://host/p" + i % 20),
+                    "value \"" + i + "\"");
+        }
+        modification = new Modification(URI.create("https://host/ce/1"),
+                URI.create("https://host/r/1"), 1);
+    }
+
+    @Benchmark
+    public String queryString() {
+        final UpdateRequest request = UpdateFactory.create();
+        request.add(SparqlUtil.getChangeEventQuery(modification, model));
+        return request.toString();
+    }
+
+    @Benchmark
+    public String requestBuilder() {
+        return new UpdateRequestBuilder().changeEvent(modification, model).build().toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UpdateRequestBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019 KTH Royal Institute of Technology and others
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Eclipse Distribution License v. 1.0 which accompanies this distribution.
+ *
+ * The Eclipse Public License is available at http://www.eclipse.org/legal/epl-v10.html
+ * and the Eclipse Distribution License is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ */
+
+package org.eclipse.lyo.trs.client.util;
+
+import java.io.StringReader;
+import java.net.URI;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.update.UpdateAction;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.update.UpdateRequest;
+import org.eclipse.lyo.core.trs.ChangeEvent;
+import org.eclipse.lyo.core.trs.Creation;
+import org.eclipse.lyo.core.trs.Deletion;
+import org.eclipse.lyo.core.trs.Modification;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UpdateRequestBuilderTest {
+
+    private static final URI RESOURCE = URI.create("http://host/r/1");
+
+    @Test
+    public void testSameEffectAsQueryStrings() {
+        final Model v1 = parse("<http://host/r/1> <http://host/p> \"a\\nb\" ; " +
+                "<http://host/q> [ <http://host/p> \"c\"@en ] .");
+        final Model v2 = parse("<http://host/r/1> <http://host/p> 42 .");
+        final ChangeEvent[] events = {
+                new Creation(URI.create("http://host/ce/1"), RESOURCE, 1),
+                new Modification(URI.create("http://host/ce/2"), RESOURCE, 2),
+                new Deletion(URI.create("http://host/ce/3"), RESOURCE, 3)};
+        final Model[] models = {v1, v2, null};
+
+        final Dataset fromStrings = DatasetFactory.createTxnMem();
+        final Dataset fromBuilder = DatasetFactory.createTxnMem();
+        for (int i = 0; i < events.length; i++) {
+            UpdateAction.execute(
+                    UpdateFactory.create(SparqlUtil.getChangeEventQuery(events[i], models[i])),
+                    fromStrings);
+            final UpdateRequest request = new UpdateRequestBuilder()
+                    .changeEvent(events[i], models[i]).build();
+            // what is sent to the endpoint
+            UpdateAction.execute(UpdateFactory.create(request.toString()), fromBuilder);
+
+            Assert.assertEquals(fromStrings.containsNamedModel(RESOURCE.toString()),
+                    fromBuilder.containsNamedModel(RESOURCE.toString()));
+            Assert.assertTrue(fromStrings.getNamedModel(RESOURCE.toString()).isIsomorphicWith(
+                    fromBuilder.getNamedModel(RESOURCE.toString())));
+        }
+    }
+
+    private static Model parse(final String turtle) {
+        final Model model = ModelFactory.createDefaultModel();
+        model.read(new StringReader(turtle), null, "TURTLE");
+        return model;
+    }
+}